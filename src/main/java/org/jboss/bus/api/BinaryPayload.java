@@ -0,0 +1,210 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.api;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary message payload backed by a heap or direct {@link ByteBuffer}. Translators pass binary bodies in this form
+ * so that they are never decoded to strings. Slices and duplicates share the content with the original payload,
+ * nothing is copied until the payload is serialized or converted to an array.
+ *
+ * The content must not be modified once the payload is created as the payload can be delivered to multiple translators.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class BinaryPayload implements Serializable {
+
+   private static final long serialVersionUID = -4297137856409402853L;
+
+   /**
+    * The content, positioned at 0 and limited to the payload length.
+    */
+   private transient ByteBuffer buffer;
+
+   /**
+    * Creates a payload over the remaining bytes of the buffer.
+    *
+    * @param buffer The buffer, already sliced so that its position is 0.
+    */
+   private BinaryPayload(final ByteBuffer buffer) {
+      this.buffer = buffer;
+   }
+
+   /**
+    * Creates a payload sharing the given array.
+    *
+    * @param bytes The content.
+    * @return The payload.
+    */
+   public static BinaryPayload wrap(final byte[] bytes) {
+      return new BinaryPayload(ByteBuffer.wrap(bytes));
+   }
+
+   /**
+    * Creates a payload sharing a part of the given array.
+    *
+    * @param bytes  The array with the content.
+    * @param offset Offset of the content in the array.
+    * @param length Length of the content.
+    * @return The payload.
+    */
+   public static BinaryPayload wrap(final byte[] bytes, final int offset, final int length) {
+      return new BinaryPayload(ByteBuffer.wrap(bytes, offset, length).slice());
+   }
+
+   /**
+    * Creates a payload sharing the remaining bytes of the given buffer. The position and the limit of the buffer are
+    * not changed.
+    *
+    * @param buffer The buffer with the content.
+    * @return The payload.
+    */
+   public static BinaryPayload wrap(final ByteBuffer buffer) {
+      return new BinaryPayload(buffer.slice());
+   }
+
+   /**
+    * Gets the length of the payload in bytes.
+    *
+    * @return The length of the payload.
+    */
+   public int length() {
+      return buffer.limit();
+   }
+
+   /**
+    * Tells whether the content is stored in a direct buffer.
+    *
+    * @return True if and only if the content is stored off the heap.
+    */
+   public boolean isDirect() {
+      return buffer.isDirect();
+   }
+
+   /**
+    * Creates a payload sharing a part of the content of this payload.
+    *
+    * @param offset Offset of the part in this payload.
+    * @param length Length of the part.
+    * @return The payload with the part of the content.
+    */
+   public BinaryPayload slice(final int offset, final int length) {
+      if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+         throw new IndexOutOfBoundsException("Slice [" + offset + ", " + (offset + length) + ") out of payload length " + buffer.limit());
+      }
+
+      final ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(offset).limit(offset + length);
+      return new BinaryPayload(duplicate.slice());
+   }
+
+   /**
+    * Creates a payload sharing the whole content of this payload.
+    *
+    * @return The duplicate payload.
+    */
+   public BinaryPayload duplicate() {
+      return new BinaryPayload(buffer.duplicate());
+   }
+
+   /**
+    * Gets a read-only view of the content. The view has its own position and limit.
+    *
+    * @return The view of the content.
+    */
+   public ByteBuffer asByteBuffer() {
+      return buffer.asReadOnlyBuffer();
+   }
+
+   /**
+    * Gets a copy of the content as an array.
+    *
+    * @return The copy of the content.
+    */
+   public byte[] getBytes() {
+      final byte[] bytes = new byte[buffer.limit()];
+      buffer.duplicate().get(bytes);
+      return bytes;
+   }
+
+   /**
+    * Gets the content as an array without copying it when the backing array holds exactly the content. Meant for translators
+    * handing the content over to another system, the returned array is shared with the payload and must not be modified.
+    *
+    * @return The content, possibly the backing array.
+    */
+   public byte[] getSharedBytes() {
+      if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+         return buffer.array();
+      }
+
+      return getBytes();
+   }
+
+   @Override
+   public boolean equals(final Object obj) {
+      return obj instanceof BinaryPayload && buffer.equals(((BinaryPayload) obj).buffer);
+   }
+
+   @Override
+   public int hashCode() {
+      return buffer.hashCode();
+   }
+
+   @Override
+   public String toString() {
+      return "BinaryPayload[length=" + buffer.limit() + (buffer.isDirect() ? ", direct" : "") + "]";
+   }
+
+   /**
+    * Writes the length and the content of the payload.
+    *
+    * @param out The output stream.
+    * @throws IOException When it was not possible to write the payload.
+    */
+   private void writeObject(final ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      out.writeInt(buffer.limit());
+      if (buffer.hasArray()) {
+         out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+      } else {
+         out.write(getBytes());
+      }
+   }
+
+   /**
+    * Reads the payload into a heap buffer.
+    *
+    * @param in The input stream.
+    * @throws IOException            When it was not possible to read the payload.
+    * @throws ClassNotFoundException Never, there are no objects in the serialized form.
+    */
+   private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      final byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      buffer = ByteBuffer.wrap(bytes);
+   }
+}
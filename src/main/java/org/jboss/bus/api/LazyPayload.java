@@ -0,0 +1,160 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.api;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payload keeping the native body of a translator as it was received. The body is converted only when some translator
+ * or rule asks for a different type, using the {@link PayloadConverters}, and each conversion is done at most once.
+ * Translators passing the body unchanged to a system that understands it do not pay for any conversion.
+ *
+ * A lazy payload that is serialized keeps the body when it is serializable, otherwise its binary or string form.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class LazyPayload implements Serializable {
+
+   private static final long serialVersionUID = 3262846286066219331L;
+
+   /**
+    * The native body.
+    */
+   private transient Object body;
+
+   /**
+    * Results of the conversions by the class produced by the converter, null until there is some.
+    */
+   private transient volatile Map<Class<?>, Object> conversions;
+
+   /**
+    * Creates a payload with the given native body.
+    *
+    * @param body The native body.
+    */
+   public LazyPayload(final Object body) {
+      if (body == null) {
+         throw new IllegalArgumentException("Payload body must not be null.");
+      }
+
+      this.body = body;
+   }
+
+   /**
+    * Gets the native body as it was received by the translator.
+    *
+    * @return The native body.
+    */
+   public Object getBody() {
+      return body;
+   }
+
+   /**
+    * Gets the body converted to the given type. The result of the conversion is cached by the class the converter
+    * produces, so requesting a supertype of an already converted type does not convert the body again.
+    *
+    * @param type The requested type.
+    * @param <T>  The requested type.
+    * @return The body of the requested type.
+    * @throws IllegalArgumentException When the body cannot be converted to the requested type.
+    */
+   public <T> T as(final Class<T> type) {
+      if (type.isInstance(body)) {
+         return type.cast(body);
+      }
+
+      Map<Class<?>, Object> cache = conversions;
+      if (cache == null) {
+         synchronized (this) {
+            cache = conversions;
+            if (cache == null) {
+               cache = new ConcurrentHashMap<>(4);
+               conversions = cache;
+            }
+         }
+      }
+
+      return type.cast(cache.computeIfAbsent(PayloadConverters.producedClass(body.getClass(), type), key -> PayloadConverters.convert(body, type)));
+   }
+
+   /**
+    * Gets the payload unwrapped from a lazy payload, the native body for a lazy payload and the payload itself otherwise.
+    *
+    * @param payload The payload.
+    * @return The native body.
+    */
+   public static Object nativeBody(final Object payload) {
+      return payload instanceof LazyPayload ? ((LazyPayload) payload).body : payload;
+   }
+
+   @Override
+   public boolean equals(final Object obj) {
+      return obj instanceof LazyPayload && body.equals(((LazyPayload) obj).body);
+   }
+
+   @Override
+   public int hashCode() {
+      return body.hashCode();
+   }
+
+   @Override
+   public String toString() {
+      return as(String.class);
+   }
+
+   /**
+    * Writes the body, or its binary or string form when it is not serializable.
+    *
+    * @param out The output stream.
+    * @throws IOException When it was not possible to write the payload.
+    */
+   private void writeObject(final ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+
+      if (body instanceof Serializable) {
+         out.writeObject(body);
+      } else {
+         Serializable form;
+         try {
+            form = as(BinaryPayload.class);
+         } catch (IllegalArgumentException e) {
+            form = as(String.class);
+         }
+         out.writeObject(form);
+      }
+   }
+
+   /**
+    * Reads the body.
+    *
+    * @param in The input stream.
+    * @throws IOException            When it was not possible to read the payload.
+    * @throws ClassNotFoundException When the class of the body is not available.
+    */
+   private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      body = in.readObject();
+   }
+}
@@ -27,6 +27,12 @@ import java.util.Properties;
  * Message used carry data on the federated bus. The messages and events of all connected systems need to be translated
  * to/from this message format.
  *
+ * A single message instance is shared by all the translators it is delivered to. Its headers and properties are immutable
+ * maps that are replaced (never modified) by the setters, so a translator can read them without copying or locking even
+ * when they are changed concurrently. Translators and rules that need a modified message should preferably derive
+ * a new one using {@link #withHeader(String, Object)}, {@link #withProperty(String, String)} or {@link #withPayload(Serializable)},
+ * which leaves the original message intact for the other translators.
+ *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
 public interface Message extends Serializable {
@@ -42,7 +48,13 @@ public interface Message extends Serializable {
    String SOURCE_HEADER = "federated.bus.source";
 
    /**
-    * Gets the message properties.
+    * Name of the header carrying the identifier correlating a reply with the request it answers.
+    */
+   String CORRELATION_ID_HEADER = "federated.bus.correlationId";
+
+   /**
+    * Gets a live view of the message properties. Changes of the returned properties are written through to the message
+    * and later changes of the message are visible in the view. Use {@link Properties#clone()} to get a detached copy.
     *
     * @return Message properties.
     */
@@ -87,6 +99,32 @@ public interface Message extends Serializable {
     */
    Serializable getPayload();
 
+   /**
+    * Gets the message payload converted to the given type. Lazy payloads are converted once and the result is cached.
+    *
+    * @param type The requested type.
+    * @param <T>  The requested type.
+    * @return The message payload of the requested type.
+    * @throws IllegalArgumentException When the payload cannot be converted to the requested type.
+    */
+   default <T> T getPayload(final Class<T> type) {
+      final Serializable payload = getPayload();
+      if (payload instanceof LazyPayload) {
+         return ((LazyPayload) payload).as(type);
+      }
+
+      return PayloadConverters.convert(payload, type);
+   }
+
+   /**
+    * Gets the message payload in the form received by the translator, i.e. the native body of a lazy payload.
+    *
+    * @return The native message payload.
+    */
+   default Object getNativePayload() {
+      return LazyPayload.nativeBody(getPayload());
+   }
+
    /**
     * Sets the message payload.
     *
@@ -95,14 +133,14 @@ public interface Message extends Serializable {
    void setPayload(final Serializable payload);
 
    /**
-    * Sets the message headers.
+    * Sets the message headers. The headers are copied unless they already are immutable.
     *
     * @param headers The message headers.
     */
    void setHeaders(final Map<String, Object> headers);
 
    /**
-    * Gets the message headers.
+    * Gets the message headers. The returned map is immutable.
     *
     * @return The message headers.
     */
@@ -132,4 +170,33 @@ public interface Message extends Serializable {
     * @return The value of the property.
     */
    Object getHeader(final String name, final Object defaultValue);
+
+   /**
+    * Derives a new message with the given header added or replaced. The payload, the properties and the other headers are
+    * shared with this message, which is left intact.
+    *
+    * @param name  The header name.
+    * @param value The header value.
+    * @return The derived message.
+    */
+   Message withHeader(final String name, final Object value);
+
+   /**
+    * Derives a new message with the given property added or replaced. The payload, the headers and the other properties are
+    * shared with this message, which is left intact.
+    *
+    * @param name  Name of the property.
+    * @param value The property value.
+    * @return The derived message.
+    */
+   Message withProperty(final String name, final String value);
+
+   /**
+    * Derives a new message with the given payload. The headers and the properties are shared with this message, which
+    * is left intact.
+    *
+    * @param payload The payload.
+    * @return The derived message.
+    */
+   Message withPayload(final Serializable payload);
 }
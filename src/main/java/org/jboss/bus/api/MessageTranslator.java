@@ -19,6 +19,10 @@
  */
 package org.jboss.bus.api;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * An interface between an actual event driven system and the federated bus.
  *
@@ -56,6 +60,75 @@ public interface MessageTranslator {
     */
    void sendMessage(final Message message) throws FederatedBusException;
 
+   /**
+    * Used by the federated bus to publish a batch of messages to a channel served by this message translator.
+    * The default implementation sends the messages one by one, translators should override it when they are able
+    * to amortize the costs of sending over the whole batch.
+    *
+    * @param messages The messages to be distributed in the given order.
+    * @throws FederatedBusException When it was not possible to deliver some of the messages. The delivery of the other
+    *                               messages is still attempted.
+    */
+   default void sendMessages(final List<Message> messages) throws FederatedBusException {
+      FederatedBusException failure = null;
+
+      for (final Message message : messages) {
+         try {
+            sendMessage(message);
+         } catch (FederatedBusException e) {
+            if (failure == null) {
+               failure = e;
+            } else {
+               failure.addSuppressed(e);
+            }
+         }
+      }
+
+      if (failure != null) {
+         throw failure;
+      }
+   }
+
+   /**
+    * Used by the federated bus to publish message to a channel served by this message translator and to learn when
+    * the delivery finished. The default implementation sends the message synchronously, translators should override it
+    * when the underlying system reports the completion of the delivery asynchronously.
+    *
+    * @param message The message to be distributed.
+    * @return Stage completed once the message was delivered, completed exceptionally with the cause when the delivery failed.
+    */
+   default CompletionStage<Void> sendMessageAsync(final Message message) {
+      final CompletableFuture<Void> result = new CompletableFuture<>();
+      try {
+         sendMessage(message);
+         result.complete(null);
+      } catch (FederatedBusException | RuntimeException e) {
+         result.completeExceptionally(e);
+      }
+
+      return result;
+   }
+
+   /**
+    * Used by the federated bus to publish a batch of messages to a channel served by this message translator and to learn
+    * when the delivery finished. The default implementation sends the batch synchronously.
+    *
+    * @param messages The messages to be distributed in the given order.
+    * @return Stage completed once all the messages were delivered, completed exceptionally with the cause when the delivery
+    * of some of the messages failed.
+    */
+   default CompletionStage<Void> sendMessagesAsync(final List<Message> messages) {
+      final CompletableFuture<Void> result = new CompletableFuture<>();
+      try {
+         sendMessages(messages);
+         result.complete(null);
+      } catch (FederatedBusException | RuntimeException e) {
+         result.completeExceptionally(e);
+      }
+
+      return result;
+   }
+
    /**
     * Gets the name of this translator which is later used in message headers to identify the source of the message.
     *
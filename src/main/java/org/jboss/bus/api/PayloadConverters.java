@@ -0,0 +1,224 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of converters between payload types. Converters are registered for a source and a target class and are
+ * also used for the subclasses and implementations of the source class. The converter found for each pair of classes
+ * is cached. Any payload can be converted to a string using its {@link Object#toString()} method.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class PayloadConverters {
+
+   /**
+    * Registered converters by the source class and the target class.
+    */
+   private static final Map<Class<?>, Map<Class<?>, Function<Object, ?>>> converters = new ConcurrentHashMap<>();
+
+   /**
+    * Converters resolved for the actual source class, including the misses.
+    */
+   private static final Map<Class<?>, Map<Class<?>, Converter>> resolved = new ConcurrentHashMap<>();
+
+   /**
+    * Marks a pair of classes without any converter in the cache of resolved converters.
+    */
+   private static final Converter NO_CONVERTER = new Converter(null, null);
+
+   static {
+      register(byte[].class, BinaryPayload.class, BinaryPayload::wrap);
+      register(ByteBuffer.class, BinaryPayload.class, BinaryPayload::wrap);
+      register(BinaryPayload.class, byte[].class, BinaryPayload::getBytes);
+      register(BinaryPayload.class, ByteBuffer.class, BinaryPayload::asByteBuffer);
+      register(BinaryPayload.class, String.class, payload -> new String(payload.getSharedBytes(), StandardCharsets.UTF_8));
+      register(String.class, byte[].class, string -> string.getBytes(StandardCharsets.UTF_8));
+      register(String.class, BinaryPayload.class, string -> BinaryPayload.wrap(string.getBytes(StandardCharsets.UTF_8)));
+      register(byte[].class, String.class, bytes -> new String(bytes, StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Utility class, not to be instantiated.
+    */
+   private PayloadConverters() {
+   }
+
+   /**
+    * Registers a converter. Replaces any converter previously registered for the same classes.
+    *
+    * @param source    The source class.
+    * @param target    The target class.
+    * @param converter The converter.
+    * @param <S>       Type of the source payload.
+    * @param <T>       Type of the target payload.
+    */
+   @SuppressWarnings("unchecked")
+   public static <S, T> void register(final Class<S> source, final Class<T> target, final Function<? super S, ? extends T> converter) {
+      converters.computeIfAbsent(source, key -> new ConcurrentHashMap<>()).put(target, (Function<Object, ?>) converter);
+      resolved.clear();
+   }
+
+   /**
+    * Removes the converter registered for the given classes.
+    *
+    * @param source The source class.
+    * @param target The target class.
+    */
+   public static void unregister(final Class<?> source, final Class<?> target) {
+      final Map<Class<?>, Function<Object, ?>> targets = converters.get(source);
+      if (targets != null) {
+         targets.remove(target);
+      }
+      resolved.clear();
+   }
+
+   /**
+    * Gets the class produced when converting a payload of the source class to the target class. This is the target
+    * class of the registered converter, which can be a subclass of the requested one, or the requested class itself
+    * when there is no converter.
+    *
+    * @param source The source class.
+    * @param target The requested target class.
+    * @return The class produced by the conversion.
+    */
+   public static Class<?> producedClass(final Class<?> source, final Class<?> target) {
+      if (target.isAssignableFrom(source)) {
+         return source;
+      }
+
+      final Converter converter = resolve(source, target);
+      return converter != NO_CONVERTER ? converter.target : target;
+   }
+
+   /**
+    * Converts the payload to the given type.
+    *
+    * @param payload The payload to be converted.
+    * @param target  The target class.
+    * @param <T>     Type of the target payload.
+    * @return The converted payload, null for a null payload.
+    * @throws IllegalArgumentException When there is no converter for the payload and the target class.
+    */
+   public static <T> T convert(final Object payload, final Class<T> target) {
+      if (payload == null || target.isInstance(payload)) {
+         return target.cast(payload);
+      }
+
+      final Converter converter = resolve(payload.getClass(), target);
+      if (converter != NO_CONVERTER) {
+         return target.cast(converter.function.apply(payload));
+      } else if (target == String.class) {
+         return target.cast(payload.toString());
+      }
+
+      throw new IllegalArgumentException("No converter from " + payload.getClass().getName() + " to " + target.getName());
+   }
+
+   /**
+    * Gets the cached converter of the source class to the target class, finds it when it is not cached yet.
+    *
+    * @param source The source class.
+    * @param target The target class.
+    * @return The converter, {@link #NO_CONVERTER} when there is none.
+    */
+   private static Converter resolve(final Class<?> source, final Class<?> target) {
+      return resolved.computeIfAbsent(source, key -> new ConcurrentHashMap<>()).computeIfAbsent(target, key -> find(source, target));
+   }
+
+   /**
+    * Finds the converter of the source class, its superclasses or interfaces to the target class or its subclass.
+    *
+    * @param source The source class.
+    * @param target The target class.
+    * @return The converter, {@link #NO_CONVERTER} when there is none.
+    */
+   private static Converter find(final Class<?> source, final Class<?> target) {
+      final Deque<Class<?>> queue = new ArrayDeque<>();
+      final Set<Class<?>> visited = new HashSet<>();
+      queue.add(source);
+
+      // breadth first, so that the closest registered class wins
+      while (!queue.isEmpty()) {
+         final Class<?> clazz = queue.poll();
+         if (!visited.add(clazz)) {
+            continue;
+         }
+
+         final Map<Class<?>, Function<Object, ?>> targets = converters.get(clazz);
+         if (targets != null) {
+            final Function<Object, ?> exact = targets.get(target);
+            if (exact != null) {
+               return new Converter(target, exact);
+            }
+            for (final Map.Entry<Class<?>, Function<Object, ?>> entry : targets.entrySet()) {
+               if (target.isAssignableFrom(entry.getKey())) {
+                  return new Converter(entry.getKey(), entry.getValue());
+               }
+            }
+         }
+
+         if (clazz.getSuperclass() != null) {
+            queue.add(clazz.getSuperclass());
+         }
+         for (final Class<?> iface : clazz.getInterfaces()) {
+            queue.add(iface);
+         }
+      }
+
+      return NO_CONVERTER;
+   }
+
+   /**
+    * Registered converter together with its target class.
+    */
+   private static final class Converter {
+
+      /**
+       * The target class the converter was registered for.
+       */
+      private final Class<?> target;
+
+      /**
+       * The conversion function.
+       */
+      private final Function<Object, ?> function;
+
+      /**
+       * Creates a converter.
+       *
+       * @param target   The target class the converter was registered for.
+       * @param function The conversion function.
+       */
+      private Converter(final Class<?> target, final Function<Object, ?> function) {
+         this.target = target;
+         this.function = function;
+      }
+   }
+}
@@ -19,25 +19,53 @@
  */
 package org.jboss.bus.camel;
 
+import org.apache.camel.AsyncProcessor;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Consumer;
+import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
+import org.apache.camel.ExchangePattern;
 import org.apache.camel.Processor;
-import org.apache.camel.ProducerTemplate;
+import org.apache.camel.Producer;
+import org.apache.camel.StreamCache;
+import org.apache.camel.util.AsyncProcessorConverterHelper;
+import org.apache.camel.util.ServiceHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.BinaryPayload;
 import org.jboss.bus.api.CompoundContext;
 import org.jboss.bus.api.FederatedBus;
 import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.LazyPayload;
 import org.jboss.bus.api.Message;
 import org.jboss.bus.internal.AbstractMessageTranslator;
-import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.internal.MessageHeaders;
+import org.jboss.bus.internal.ObjectFactory;
 
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Message translator which connects to Apache Camel.
  *
+ * Messages are passed to the producers of the output endpoints on the sending thread. Asynchronous producers release
+ * the thread right away, but synchronous ones like {@code direct:} run the whole downstream route on it. With the simple
+ * federated bus, a slow synchronous route therefore occupies the drain threads of this translator. Put an asynchronous
+ * endpoint like {@code seda:} in front of such routes to decouple them from the bus.
+ *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
 public class CamelMessageTranslator extends AbstractMessageTranslator {
@@ -47,15 +75,85 @@ public class CamelMessageTranslator extends AbstractMessageTranslator {
     */
    private static final Logger log = LogManager.getLogger(CamelMessageTranslator.class);
 
+   /**
+    * Maximum time in milliseconds to wait for the handoff threads to process the queued messages when the translator stops.
+    */
+   private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
    /**
     * Camel context is used for sending and receiving messages - message exchange.
     */
    private CamelContext camelContext;
 
    /**
-    * Producer template used for sending messages.
+    * Output endpoints resolved when the translator starts so that they are not looked up for every message.
     */
-   private ProducerTemplate producerTemplate;
+   private Endpoint[] resolvedOutputEndpoints = new Endpoint[0];
+
+   /**
+    * Started producers of the output endpoints, at the same indexes as the endpoints.
+    */
+   private Producer[] producers = new Producer[0];
+
+   /**
+    * Asynchronous processors of the producers, at the same indexes as the endpoints.
+    */
+   private AsyncProcessor[] processors = new AsyncProcessor[0];
+
+   /**
+    * Maximum number of messages sent by this translator that were not processed by the endpoints yet, 0 for no limit.
+    */
+   private int maxInFlight = 0;
+
+   /**
+    * Maximum number of messages sent to a single output endpoint that were not processed by it yet, 0 for no limit.
+    */
+   private int maxInFlightPerEndpoint = 0;
+
+   /**
+    * Permits to send messages by this translator, null when there is no limit.
+    */
+   private Semaphore inFlight;
+
+   /**
+    * Permits to send messages to the output endpoints, at the same indexes as the endpoints, null when there is no limit.
+    */
+   private Semaphore[] endpointInFlight;
+
+   /**
+    * Number of handoff threads processing the messages of each input endpoint in the async handoff mode.
+    */
+   private int consumerConcurrency = 1;
+
+   /**
+    * How the messages received from the input endpoints are handed over to the bus.
+    */
+   private HandoffMode handoffMode = HandoffMode.INLINE;
+
+   /**
+    * Capacity of the queue of each input endpoint in the async handoff mode.
+    */
+   private int handoffQueueSize = 1_000;
+
+   /**
+    * Consumer concurrency of individual input endpoints overriding the default, as a list of endpoint=concurrency pairs.
+    */
+   private String endpointConcurrency;
+
+   /**
+    * Handoff modes of individual input endpoints overriding the default, as a list of endpoint=mode pairs.
+    */
+   private String endpointHandoffModes;
+
+   /**
+    * Started consumers of the input endpoints.
+    */
+   private final List<Consumer> consumers = new ArrayList<>();
+
+   /**
+    * Executors of the input endpoints in the async handoff mode.
+    */
+   private final List<ExecutorService> handoffExecutors = new ArrayList<>();
 
    /**
     * Sets the default name of the translator.
@@ -76,8 +174,6 @@ public class CamelMessageTranslator extends AbstractMessageTranslator {
     */
    private void initCamel(CamelContext camelContext) {
       this.camelContext = camelContext;
-
-      producerTemplate = camelContext.createProducerTemplate();
    }
 
    @Override
@@ -85,76 +181,531 @@ public class CamelMessageTranslator extends AbstractMessageTranslator {
       super.start(federatedBus);
 
       if (inputEndpoints != null && inputEndpoints.size() > 0) {
+         final Map<String, String> concurrencies = parseOverrides(endpointConcurrency);
+         final Map<String, String> modes = parseOverrides(endpointHandoffModes);
+
          inputEndpoints.forEach(endpoint -> {
             try {
-               camelContext.getEndpoint(endpoint).createConsumer(new MessageConsumer()).start();
+               final Endpoint camelEndpoint = camelContext.getEndpoint(endpoint);
+               final int concurrency = parseOverride(concurrencies, endpoint, Integer::valueOf, consumerConcurrency);
+               final HandoffMode mode = parseOverride(modes, endpoint, value -> HandoffMode.valueOf(ObjectFactory.camelCaseToEnum(value)), handoffMode);
+
+               final ExecutorService executor = mode == HandoffMode.ASYNC ? newHandoffExecutor(endpoint, concurrency) : null;
+               if (executor != null) {
+                  handoffExecutors.add(executor);
+               }
+
+               final MessageConsumer messageConsumer = new MessageConsumer(getName() + ":" + camelEndpoint.getEndpointUri(), executor);
+               if (mode == HandoffMode.INLINE && concurrency > 1) {
+                  log.warn("Consumer concurrency {} of endpoint {} is ignored in the inline handoff mode, use the async handoff mode "
+                        + "or the concurrency options of the endpoint itself (e.g. concurrentConsumers of SEDA).", concurrency, endpoint);
+               }
+
+               final Consumer consumer = camelEndpoint.createConsumer(messageConsumer);
+               consumer.start();
+               consumers.add(consumer);
+            } catch (Exception e) {
+               log.error("Unable to start consumer for endpoint {}: ", endpoint, e);
+            }
+         });
+      }
+
+      final List<Endpoint> endpoints = new ArrayList<>();
+      final List<Producer> startedProducers = new ArrayList<>();
+      if (outputEndpoints != null) {
+         outputEndpoints.forEach(endpoint -> {
+            try {
+               final Endpoint camelEndpoint = camelContext.getEndpoint(endpoint);
+               final Producer producer = camelEndpoint.createProducer();
+               ServiceHelper.startService(producer);
+               endpoints.add(camelEndpoint);
+               startedProducers.add(producer);
             } catch (Exception e) {
-               log.error("Unable to start consumer for endpoint {}", endpoint);
+               log.error("Unable to resolve output endpoint {}", endpoint);
             }
          });
       }
+      resolvedOutputEndpoints = endpoints.toArray(new Endpoint[endpoints.size()]);
+      producers = startedProducers.toArray(new Producer[startedProducers.size()]);
+      processors = new AsyncProcessor[producers.length];
+      for (int i = 0; i < producers.length; i++) {
+         processors[i] = AsyncProcessorConverterHelper.convert(producers[i]);
+      }
+
+      inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+      if (maxInFlightPerEndpoint > 0) {
+         endpointInFlight = new Semaphore[producers.length];
+         for (int i = 0; i < producers.length; i++) {
+            endpointInFlight[i] = new Semaphore(maxInFlightPerEndpoint);
+         }
+      } else {
+         endpointInFlight = null;
+      }
+   }
+
+   @Override
+   public void stop() {
+      for (final Consumer consumer : consumers) {
+         try {
+            consumer.stop();
+         } catch (Exception e) {
+            log.warn("Unable to stop consumer of endpoint {}: ", consumer.getEndpoint(), e);
+         }
+      }
+      consumers.clear();
+
+      handoffExecutors.forEach(ExecutorService::shutdown);
+      try {
+         for (final ExecutorService executor : handoffExecutors) {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+               log.warn("Messages received by translator {} were not processed within {} ms.", getName(), SHUTDOWN_TIMEOUT_MS);
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      handoffExecutors.clear();
+
+      for (final Producer producer : producers) {
+         try {
+            ServiceHelper.stopService(producer);
+         } catch (Exception e) {
+            log.warn("Unable to stop producer of endpoint {}: ", producer.getEndpoint(), e);
+         }
+      }
+      producers = new Producer[0];
+      processors = new AsyncProcessor[0];
+      resolvedOutputEndpoints = new Endpoint[0];
    }
 
    @Override
    public void sendMessage(Message message) throws FederatedBusException {
-      if (outputEndpoints != null) {
-         outputEndpoints.forEach(endpoint -> {
-            producerTemplate.asyncSend(endpoint, new MessageProcessor(message.getPayload(), message.getHeaders()));
-            if (log.isDebugEnabled()) {
-               log.debug("Sent to {}", endpoint);
+      sendMessageAsync(message);
+   }
+
+   /**
+    * Sends the message to all the output endpoints. The body and the headers are prepared only once for all the endpoints.
+    *
+    * @param message The message to be distributed.
+    * @return Stage completed once all the endpoints processed the message.
+    */
+   @Override
+   public CompletionStage<Void> sendMessageAsync(final Message message) {
+      final Delivery delivery = new Delivery(processors.length);
+      if (processors.length == 0) {
+         return delivery;
+      }
+
+      final Object body = toBody(message.getPayload());
+      final Map<String, Object> headers = signedHeaders(message);
+      for (int i = 0; i < processors.length; i++) {
+         send(i, body, headers, delivery);
+         if (log.isDebugEnabled()) {
+            log.debug("Sent to {}", resolvedOutputEndpoints[i]);
+         }
+      }
+
+      return delivery;
+   }
+
+   @Override
+   public void sendMessages(final List<Message> messages) throws FederatedBusException {
+      sendMessagesAsync(messages);
+   }
+
+   /**
+    * Sends the whole batch to one endpoint after another so that each endpoint is processed with a warm producer.
+    * The body and the headers of each message are prepared only once for all the endpoints.
+    *
+    * @param messages The messages to be distributed in the given order.
+    * @return Stage completed once all the endpoints processed all the messages.
+    */
+   @Override
+   public CompletionStage<Void> sendMessagesAsync(final List<Message> messages) {
+      final Delivery delivery = new Delivery(processors.length * messages.size());
+      if (processors.length == 0 || messages.isEmpty()) {
+         return delivery;
+      }
+
+      final Object[] bodies = new Object[messages.size()];
+      final List<Map<String, Object>> headers = new ArrayList<>(messages.size());
+      for (int i = 0; i < bodies.length; i++) {
+         bodies[i] = toBody(messages.get(i).getPayload());
+         headers.add(signedHeaders(messages.get(i)));
+      }
+
+      for (int i = 0; i < processors.length; i++) {
+         for (int j = 0; j < bodies.length; j++) {
+            send(i, bodies[j], headers.get(j), delivery);
+         }
+         if (log.isDebugEnabled()) {
+            log.debug("Sent {} messages to {}", messages.size(), resolvedOutputEndpoints[i]);
+         }
+      }
+
+      return delivery;
+   }
+
+   /**
+    * Sends a message to an output endpoint. The exchange is created by the endpoint and passed directly to its producer,
+    * synchronous producers process it on the calling thread.
+    * Waits for a free permit when the maximum number of messages in flight is reached.
+    *
+    * @param index    Index of the output endpoint.
+    * @param body     Body of the message.
+    * @param headers  Headers of the message including the translator signature. The exchange gets a copy of its own.
+    * @param delivery Delivery notified once the exchange is done.
+    */
+   private void send(final int index, final Object body, final Map<String, Object> headers, final Delivery delivery) {
+      final Endpoint endpoint = resolvedOutputEndpoints[index];
+      if (!acquire(index)) {
+         delivery.done(new FederatedBusException("Interrupted while waiting to send a message to " + endpoint));
+         return;
+      }
+
+      try {
+         final Exchange exchange = endpoint.createExchange(ExchangePattern.InOnly);
+         exchange.getIn().setBody(body);
+         exchange.getIn().setHeaders(headers);
+
+         processors[index].process(exchange, doneSync -> {
+            release(index);
+            if (exchange.getException() != null) {
+               log.warn("Unable to send message to {}: ", endpoint, exchange.getException());
+               delivery.done(new FederatedBusException("Unable to send message to " + endpoint, exchange.getException()));
+            } else {
+               delivery.done(null);
             }
          });
+      } catch (RuntimeException e) {
+         release(index);
+         delivery.done(new FederatedBusException("Unable to send message to " + endpoint, e));
       }
    }
 
+   /**
+    * Takes the permits to send a message to an output endpoint, blocks the calling thread until they are available.
+    *
+    * @param index Index of the output endpoint.
+    * @return True if the permits were taken, false when the thread was interrupted.
+    */
+   private boolean acquire(final int index) {
+      try {
+         if (inFlight != null) {
+            inFlight.acquire();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+
+      try {
+         if (endpointInFlight != null) {
+            endpointInFlight[index].acquire();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         if (inFlight != null) {
+            inFlight.release();
+         }
+         return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * Gives back the permits to send a message to an output endpoint.
+    *
+    * @param index Index of the output endpoint.
+    */
+   private void release(final int index) {
+      if (endpointInFlight != null) {
+         endpointInFlight[index].release();
+      }
+      if (inFlight != null) {
+         inFlight.release();
+      }
+   }
+
+   /**
+    * Creates the executor of an input endpoint in the async handoff mode. The executor has a bounded queue, the consumer
+    * processes the message itself when the queue is full.
+    *
+    * @param endpoint    The input endpoint.
+    * @param concurrency Number of the threads.
+    * @return The executor.
+    */
+   private ExecutorService newHandoffExecutor(final String endpoint, final int concurrency) {
+      final int threads = Math.max(1, concurrency);
+      final AtomicInteger threadNumber = new AtomicInteger(0);
+
+      return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(handoffQueueSize), runnable -> {
+         final Thread thread = new Thread(runnable, "camel-handoff-" + getName() + "-" + endpoint + "-" + threadNumber.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }, new ThreadPoolExecutor.CallerRunsPolicy());
+   }
+
+   /**
+    * Gets the read-only headers of the message with the translator signature added. All the exchanges created for
+    * the message copy their headers from them.
+    *
+    * @param message The message.
+    * @return The signed headers.
+    */
+   private static Map<String, Object> signedHeaders(final Message message) {
+      return MessageHeaders.copyOf(message.getHeaders()).with(TRANSLATOR_SIGNATURE, true);
+   }
+
+   /**
+    * Gets the maximum number of messages sent by this translator that were not processed by the endpoints yet.
+    * @return The maximum number of messages in flight, 0 for no limit.
+    */
+   public int getMaxInFlight() {
+      return maxInFlight;
+   }
+
+   /**
+    * Sets the maximum number of messages sent by this translator that were not processed by the endpoints yet.
+    * Sending waits when the limit is reached, which propagates the backpressure of asynchronous endpoints to the bus.
+    * The wait blocks the sending thread. In the simple federated bus, that is a drain thread of this translator, and
+    * their number is capped by the translator concurrency. Other translators therefore keep their threads as long as
+    * the translator concurrencies do not add up to more than the thread pool size.
+    * @param maxInFlight The maximum number of messages in flight, 0 for no limit.
+    */
+   public void setMaxInFlight(final int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+   }
+
+   /**
+    * Gets the maximum number of messages sent to a single output endpoint that were not processed by it yet.
+    * @return The maximum number of messages in flight per endpoint, 0 for no limit.
+    */
+   public int getMaxInFlightPerEndpoint() {
+      return maxInFlightPerEndpoint;
+   }
+
+   /**
+    * Sets the maximum number of messages sent to a single output endpoint that were not processed by it yet.
+    * Sending to the endpoint waits when the limit is reached, blocking the sending thread the same way as the overall limit.
+    * @param maxInFlightPerEndpoint The maximum number of messages in flight per endpoint, 0 for no limit.
+    */
+   public void setMaxInFlightPerEndpoint(final int maxInFlightPerEndpoint) {
+      this.maxInFlightPerEndpoint = maxInFlightPerEndpoint;
+   }
+
+   /**
+    * Gets the number of handoff threads processing the messages of each input endpoint.
+    * @return The consumer concurrency.
+    */
+   public int getConsumerConcurrency() {
+      return consumerConcurrency;
+   }
+
+   /**
+    * Sets the number of handoff threads processing the messages of each input endpoint. In the async handoff mode,
+    * this is the number of threads taking the messages from the queue, the messages of the endpoint are then not processed
+    * in the order they were received when greater than 1. The inline handoff mode always uses a single consumer
+    * because additional consumers of endpoints like multicast SEDA would receive every message again, configure
+    * the concurrency of the endpoint itself instead.
+    * @param consumerConcurrency The consumer concurrency.
+    */
+   public void setConsumerConcurrency(final int consumerConcurrency) {
+      this.consumerConcurrency = consumerConcurrency;
+   }
+
+   /**
+    * Gets how the messages received from the input endpoints are handed over to the bus.
+    * @return The handoff mode.
+    */
+   public HandoffMode getHandoffMode() {
+      return handoffMode;
+   }
+
+   /**
+    * Sets how the messages received from the input endpoints are handed over to the bus.
+    * @param handoffMode The handoff mode.
+    */
+   public void setHandoffMode(final HandoffMode handoffMode) {
+      this.handoffMode = handoffMode;
+   }
+
+   /**
+    * Gets the capacity of the queue of each input endpoint in the async handoff mode.
+    * @return The capacity of the handoff queue.
+    */
+   public int getHandoffQueueSize() {
+      return handoffQueueSize;
+   }
+
+   /**
+    * Sets the capacity of the queue of each input endpoint in the async handoff mode.
+    * @param handoffQueueSize The capacity of the handoff queue.
+    */
+   public void setHandoffQueueSize(final int handoffQueueSize) {
+      this.handoffQueueSize = handoffQueueSize;
+   }
+
+   /**
+    * Gets the consumer concurrency of individual input endpoints.
+    * @return Comma separated list of endpoint=concurrency pairs.
+    */
+   public String getEndpointConcurrency() {
+      return endpointConcurrency;
+   }
+
+   /**
+    * Sets the consumer concurrency of individual input endpoints, overriding the consumer concurrency.
+    * @param endpointConcurrency Comma separated list of endpoint=concurrency pairs, e.g. {@code direct:orders=4}.
+    */
+   public void setEndpointConcurrency(final String endpointConcurrency) {
+      this.endpointConcurrency = endpointConcurrency;
+   }
+
+   /**
+    * Gets the handoff modes of individual input endpoints.
+    * @return Comma separated list of endpoint=mode pairs.
+    */
+   public String getEndpointHandoffModes() {
+      return endpointHandoffModes;
+   }
+
+   /**
+    * Sets the handoff modes of individual input endpoints, overriding the handoff mode.
+    * @param endpointHandoffModes Comma separated list of endpoint=mode pairs, e.g. {@code jetty:http://0.0.0.0:8080/in=async}.
+    */
+   public void setEndpointHandoffModes(final String endpointHandoffModes) {
+      this.endpointHandoffModes = endpointHandoffModes;
+   }
+
+   /**
+    * Converts the message payload to a Camel message body. Binary payloads are passed as byte arrays, without copying
+    * when possible. Lazy payloads are passed in their native form and left to the Camel type converters.
+    *
+    * @param payload The message payload.
+    * @return The message body.
+    */
+   private static Object toBody(final Serializable payload) {
+      if (payload instanceof BinaryPayload) {
+         return ((BinaryPayload) payload).getSharedBytes();
+      }
+
+      return LazyPayload.nativeBody(payload);
+   }
+
    /**
     * Receiver of inbound messages.
     */
    private class MessageConsumer implements Processor {
 
+      /**
+       * Value of the from header of all messages received by this consumer.
+       */
+      private final String from;
+
+      /**
+       * Executor processing the messages in the bus, null to process them in the thread of the Camel consumer.
+       */
+      private final Executor handoff;
+
+      /**
+       * Creates a consumer of a single endpoint.
+       *
+       * @param from    Value of the from header of all messages received by this consumer.
+       * @param handoff Executor processing the messages in the bus, null to process them in the thread of the Camel consumer.
+       */
+      MessageConsumer(final String from, final Executor handoff) {
+         this.from = from;
+         this.handoff = handoff;
+      }
+
       @Override
       public void process(final Exchange exchange) {
          if (exchange != null && exchange.getIn().getHeader(TRANSLATOR_SIGNATURE) == null) {
-            Message message;
+            Serializable payload = null;
             Object messageBody = exchange.getIn().getBody();
             if (log.isDebugEnabled()) {
                log.debug("Processing message: {}", messageBody);
             }
-            if (messageBody == null) {
-               message = new MessageImpl(null);
-            } else if (messageBody instanceof Serializable) {
-               message = new MessageImpl((Serializable) messageBody);
-            } else {
-               message = new MessageImpl(messageBody.toString());
+            if (messageBody instanceof byte[]) {
+               payload = BinaryPayload.wrap((byte[]) messageBody);
+            } else if (messageBody instanceof ByteBuffer) {
+               payload = BinaryPayload.wrap((ByteBuffer) messageBody);
+            } else if (messageBody instanceof InputStream || messageBody instanceof StreamCache) {
+               // streams are read once as bytes, never decoded to a string
+               final byte[] bytes = exchange.getIn().getBody(byte[].class);
+               if (bytes != null) {
+                  payload = BinaryPayload.wrap(bytes);
+               }
             }
 
-            message.setHeaders(exchange.getIn().getHeaders());
-            message.setHeader(Message.FROM_HEADER, getName() + ":" + exchange.getFromEndpoint().getEndpointUri());
-            message.setHeader(Message.SOURCE_HEADER, getName());
-            federatedBus.processMessage(message);
+            // bodies that are not binary, or streams that could not be read as bytes
+            if (payload == null && messageBody != null) {
+               payload = messageBody instanceof Serializable ? (Serializable) messageBody : new LazyPayload(messageBody);
+            }
+
+            final Message message = newMessage(payload, MessageHeaders.of(exchange.getIn().getHeaders(), from, getName()));
+            if (handoff == null) {
+               federatedBus.processMessage(message);
+            } else {
+               handoff.execute(() -> federatedBus.processMessage(message));
+            }
          }
       }
    }
 
    /**
-    * Sender of outbound messages (including their headers).
+    * Completion of sending one or more messages to the output endpoints. Completes once all the sends are done,
+    * exceptionally with the first failure.
     */
-   private static class MessageProcessor implements Processor {
+   private static final class Delivery extends CompletableFuture<Void> {
 
-      private final Object body;
-      private final Map<String, Object> headers;
+      /**
+       * Number of the sends not done yet.
+       */
+      private final AtomicInteger pending;
 
+      /**
+       * The first failure, null when all the sends done so far succeeded.
+       */
+      private volatile Throwable failure;
 
-      MessageProcessor(final Object body, final Map<String, Object> headers) {
-         this.body = body;
-         this.headers = headers;
+      /**
+       * Creates the delivery. It is completed immediately when there are no sends.
+       *
+       * @param sends Number of the sends.
+       */
+      private Delivery(final int sends) {
+         pending = new AtomicInteger(sends);
+         if (sends == 0) {
+            complete(null);
+         }
       }
 
-      @Override
-      public void process(Exchange exchange) throws Exception {
-         exchange.getIn().setBody(body);
-         exchange.getIn().setHeaders(headers);
-         exchange.getIn().setHeader(TRANSLATOR_SIGNATURE, true);
+      /**
+       * Records a done send.
+       *
+       * @param cause Cause of the failure, null when the send succeeded.
+       */
+      private void done(final Throwable cause) {
+         if (cause != null) {
+            synchronized (this) {
+               if (failure == null) {
+                  failure = cause;
+               } else {
+                  failure.addSuppressed(cause);
+               }
+            }
+         }
+
+         if (pending.decrementAndGet() == 0) {
+            if (failure == null) {
+               complete(null);
+            } else {
+               completeExceptionally(failure);
+            }
+         }
       }
    }
 }
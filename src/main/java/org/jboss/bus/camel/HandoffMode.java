@@ -0,0 +1,39 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.camel;
+
+/**
+ * How the messages received from a Camel endpoint are handed over to the federated bus.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum HandoffMode {
+
+   /**
+    * The thread of the Camel consumer processes the message in the bus. The consumer waits until the bus is done with it.
+    */
+   INLINE,
+
+   /**
+    * The message is put into a bounded queue and processed in the bus by a pool of threads dedicated to the endpoint.
+    * The consumer is released immediately unless the queue is full, in which case it processes the message itself.
+    */
+   ASYNC
+}
@@ -24,20 +24,29 @@ import org.apache.logging.log4j.Logger;
 import org.jboss.bus.api.CompoundContext;
 import org.jboss.bus.api.FederatedBus;
 import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.LazyPayload;
 import org.jboss.bus.api.Message;
 import org.jboss.bus.internal.AbstractMessageTranslator;
-import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.internal.MessageHeaders;
 import org.jboss.weld.environment.se.WeldContainer;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.EventMetadata;
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Message translator which connects to CDI.
+ * Message translator which connects to CDI. The input endpoints are names of the classes of the processed events,
+ * optionally followed by {@code @} and a name of a qualifier, e.g. {@code com.example.OrderEvent@com.example.Created}.
+ * All events are processed when there are no input endpoints.
  *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
@@ -54,14 +63,41 @@ public class CdiMessageTranslator extends AbstractMessageTranslator {
    private WeldContainer weld;
 
    /**
-    * Static list of all CDI message translator instances. This bridges the message translator and the CDI system.
+    * Event source obtained from the CDI container when the translator starts.
     */
-   private static final List<CdiMessageTranslator> instances = new ArrayList<>();
+   private Event<Object> event;
 
    /**
-    * List of processed events. Used to store already processed events so they are not processed again.
+    * Static list of all started CDI message translator instances. This bridges the message translator and the CDI system.
+    * It is iterated for every event and changed only when a translator starts or stops.
     */
-   private List<Object> processedEvents = Collections.synchronizedList(new ArrayList<>());
+   private static final List<CdiMessageTranslator> instances = new CopyOnWriteArrayList<>();
+
+   /**
+    * Events processed by this translator, computed from the input endpoints when the translator starts.
+    * Null to process all events.
+    */
+   private Subscription[] subscriptions;
+
+   /**
+    * Events fired by this translator. Used to recognize already processed events so they are not processed again.
+    */
+   private ProcessedEvents processedEvents;
+
+   /**
+    * Time in milliseconds after which a fired event is no longer expected to be observed.
+    */
+   private long processedEventsTimeToLive = 60_000;
+
+   /**
+    * Maximum number of fired events expected to be observed.
+    */
+   private int processedEventsLimit = 10_000;
+
+   /**
+    * Values of the from header by the event class, computed once for each class.
+    */
+   private final Map<Class<?>, String> fromHeaders = new ConcurrentHashMap<>();
 
    /**
     * Sets the default name of the translator.
@@ -87,6 +123,9 @@ public class CdiMessageTranslator extends AbstractMessageTranslator {
    @Override
    public void start(FederatedBus federatedBus) {
       super.start(federatedBus);
+      event = weld.event();
+      processedEvents = new ProcessedEvents(processedEventsTimeToLive, processedEventsLimit);
+      subscriptions = subscribe(inputEndpoints);
       instances.add(this);
    }
 
@@ -98,35 +137,136 @@ public class CdiMessageTranslator extends AbstractMessageTranslator {
 
    @Override
    public void sendMessage(final Message message) throws FederatedBusException {
-      processedEvents.add(message.getPayload());
-      weld.event().fire(message.getPayload());
+      final Object body = message.getNativePayload();
+      processedEvents.add(body);
+      event.fire(body);
    }
 
    /**
-    * Processes all CDI events. If an incoming event has been already processed, it is removed from the cache of processed messages.
-    * Otherwise the event is translated into a message and forwarded to the bus.
+    * Registers all the payloads as processed at once and then fires them as events.
     *
-    * @param event The fired CDI event.
+    * @param messages The messages to be distributed in the given order.
+    * @throws FederatedBusException When it was not possible to deliver some of the messages.
     */
-   private void processEvent(Object event) {
-      final Serializable payload = event instanceof Serializable ? (Serializable) event : event.toString();
+   @Override
+   public void sendMessages(final List<Message> messages) throws FederatedBusException {
+      final Object[] payloads = new Object[messages.size()];
+      for (int i = 0; i < payloads.length; i++) {
+         payloads[i] = messages.get(i).getNativePayload();
+         processedEvents.add(payloads[i]);
+      }
 
-      if (processedEvents.contains(payload)) {
-         processedEvents.remove(payload);
-      } else {
-         final Message message = new MessageImpl(payload);
-         ;
+      for (final Object payload : payloads) {
+         event.fire(payload);
+      }
+   }
 
+   /**
+    * Creates the subscriptions to the events given by the input endpoints. Each endpoint is a name of the event class,
+    * optionally followed by {@code @} and a name of the qualifier of the events.
+    *
+    * @param endpoints The input endpoints.
+    * @return The subscriptions, null when there are no input endpoints to process all events.
+    */
+   private static Subscription[] subscribe(final Set<String> endpoints) {
+      if (endpoints == null || endpoints.stream().allMatch(String::isEmpty)) {
+         return null;
+      }
+
+      final ClassLoader classLoader = Thread.currentThread().getContextClassLoader() != null ?
+            Thread.currentThread().getContextClassLoader() : CdiMessageTranslator.class.getClassLoader();
+      final List<Subscription> subscriptions = new ArrayList<>();
+      for (final String endpoint : endpoints) {
+         if (endpoint.isEmpty()) {
+            continue;
+         }
+
+         final int at = endpoint.indexOf('@');
+         final String type = at < 0 ? endpoint : endpoint.substring(0, at);
+         try {
+            subscriptions.add(new Subscription(Class.forName(type, false, classLoader), at < 0 ? null : endpoint.substring(at + 1)));
+         } catch (ClassNotFoundException e) {
+            log.error("Unable to subscribe to CDI events of an unknown class {}: ", type, e);
+         }
+      }
+
+      return subscriptions.toArray(new Subscription[subscriptions.size()]);
+   }
+
+   /**
+    * Tells whether the event is processed by this translator.
+    *
+    * @param event    The fired CDI event.
+    * @param metadata Metadata of the event.
+    * @return True if and only if the event matches some of the subscriptions.
+    */
+   private boolean isSubscribed(final Object event, final EventMetadata metadata) {
+      if (subscriptions == null) {
+         return true;
+      }
+
+      for (final Subscription subscription : subscriptions) {
+         if (subscription.matches(event, metadata)) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Processes CDI events. If an incoming event has been fired by this translator, it is removed from the processed events.
+    * Otherwise the event is translated into a message and forwarded to the bus when this translator subscribed to it.
+    *
+    * @param event    The fired CDI event.
+    * @param metadata Metadata of the event.
+    */
+   private void processEvent(final Object event, final EventMetadata metadata) {
+      if (!processedEvents.remove(event) && isSubscribed(event, metadata)) {
          if (log.isDebugEnabled()) {
-            log.debug("Processing message: {}", payload.toString());
+            log.debug("Processing message: {}", event);
          }
 
-         message.setHeader(Message.FROM_HEADER, getName() + ":" + payload.getClass().getCanonicalName());
-         message.setHeader(Message.SOURCE_HEADER, getName());
+         final Serializable payload = event instanceof Serializable ? (Serializable) event : new LazyPayload(event);
+         final String from = fromHeaders.computeIfAbsent(event.getClass(), clazz -> getName() + ":" + clazz.getCanonicalName());
+         final Message message = newMessage(payload, MessageHeaders.of(null, from, getName()));
          federatedBus.processMessage(message);
       }
    }
 
+   /**
+    * Gets the time after which a fired event is no longer expected to be observed.
+    * @return The time to live of the processed events in milliseconds.
+    */
+   public long getProcessedEventsTimeToLive() {
+      return processedEventsTimeToLive;
+   }
+
+   /**
+    * Sets the time after which a fired event is no longer expected to be observed. Fired events are normally observed
+    * synchronously, this only evicts the events whose observer never fired.
+    * @param processedEventsTimeToLive The time to live of the processed events in milliseconds.
+    */
+   public void setProcessedEventsTimeToLive(final long processedEventsTimeToLive) {
+      this.processedEventsTimeToLive = processedEventsTimeToLive;
+   }
+
+   /**
+    * Gets the maximum number of fired events expected to be observed.
+    * @return The maximum number of the processed events.
+    */
+   public int getProcessedEventsLimit() {
+      return processedEventsLimit;
+   }
+
+   /**
+    * Sets the maximum number of fired events expected to be observed. The oldest events are evicted when there are more.
+    * @param processedEventsLimit The maximum number of the processed events.
+    */
+   public void setProcessedEventsLimit(final int processedEventsLimit) {
+      this.processedEventsLimit = processedEventsLimit;
+   }
+
    /**
     * CDI bean catching all fired events.
     */
@@ -136,12 +276,64 @@ public class CdiMessageTranslator extends AbstractMessageTranslator {
       /**
        * Catches all CDI events and sends them to all instances of CDI translators for processing.
        *
-       * @param event The fired CDI event.
+       * @param event    The fired CDI event.
+       * @param metadata Metadata of the event.
        */
-      public void processEvent(@Observes Object event) {
+      public void processEvent(@Observes Object event, EventMetadata metadata) {
          for (CdiMessageTranslator translator : instances) {
-            translator.processEvent(event);
+            translator.processEvent(event, metadata);
+         }
+      }
+   }
+
+   /**
+    * Subscription of a translator to events of a class, optionally with a qualifier.
+    */
+   private static final class Subscription {
+
+      /**
+       * Class of the events.
+       */
+      private final Class<?> type;
+
+      /**
+       * Name of the qualifier of the events, null for any qualifiers.
+       */
+      private final String qualifier;
+
+      /**
+       * Creates the subscription.
+       *
+       * @param type      Class of the events.
+       * @param qualifier Name of the qualifier of the events, null for any qualifiers.
+       */
+      private Subscription(final Class<?> type, final String qualifier) {
+         this.type = type;
+         this.qualifier = qualifier;
+      }
+
+      /**
+       * Tells whether the event matches this subscription.
+       *
+       * @param event    The fired CDI event.
+       * @param metadata Metadata of the event.
+       * @return True if and only if the event is an instance of the class and has the qualifier.
+       */
+      private boolean matches(final Object event, final EventMetadata metadata) {
+         if (!type.isInstance(event)) {
+            return false;
+         }
+         if (qualifier == null) {
+            return true;
          }
+
+         for (final Annotation annotation : metadata.getQualifiers()) {
+            if (annotation.annotationType().getName().equals(qualifier)) {
+               return true;
+            }
+         }
+
+         return false;
       }
    }
 
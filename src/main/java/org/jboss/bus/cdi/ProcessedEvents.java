@@ -0,0 +1,211 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.cdi;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events fired by a translator that are expected to come back to its observer. The events are tracked by their identity,
+ * so that events fired by the application that are just equal to them are not suppressed. The same event can be tracked
+ * multiple times. Events that do not come back within the time to live are evicted, as well as the oldest events
+ * when there are too many of them.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+final class ProcessedEvents {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(ProcessedEvents.class);
+
+   /**
+    * Marks of the tracked events.
+    */
+   private final ConcurrentHashMap<IdentityKey, Mark> events = new ConcurrentHashMap<>();
+
+   /**
+    * Time to live of the tracked events in nanoseconds.
+    */
+   private final long timeToLive;
+
+   /**
+    * Maximum number of the tracked events.
+    */
+   private final int limit;
+
+   /**
+    * Time in nanoseconds when the expired events are evicted next time.
+    */
+   private volatile long nextEviction;
+
+   /**
+    * Creates an empty tracker.
+    *
+    * @param timeToLive Time to live of the tracked events in milliseconds.
+    * @param limit      Maximum number of the tracked events.
+    */
+   ProcessedEvents(final long timeToLive, final int limit) {
+      this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+      this.limit = limit;
+      this.nextEviction = System.nanoTime() + this.timeToLive;
+   }
+
+   /**
+    * Starts tracking the event.
+    *
+    * @param event The event.
+    */
+   void add(final Object event) {
+      final long now = System.nanoTime();
+      final IdentityKey key = new IdentityKey(event);
+
+      Mark mark;
+      do {
+         mark = events.get(key);
+      } while (mark == null ? events.putIfAbsent(key, new Mark(1, now)) != null : !events.replace(key, mark, new Mark(mark.count + 1, now)));
+
+      if (now - nextEviction > 0 || events.size() > limit) {
+         evict(now);
+      }
+   }
+
+   /**
+    * Stops tracking the event once.
+    *
+    * @param event The event.
+    * @return True if and only if the event was tracked.
+    */
+   boolean remove(final Object event) {
+      if (events.isEmpty()) {
+         return false;
+      }
+
+      final IdentityKey key = new IdentityKey(event);
+
+      Mark mark;
+      do {
+         mark = events.get(key);
+         if (mark == null) {
+            return false;
+         }
+      } while (mark.count > 1 ? !events.replace(key, mark, new Mark(mark.count - 1, mark.time)) : !events.remove(key, mark));
+
+      return true;
+   }
+
+   /**
+    * Gets the number of the tracked events.
+    *
+    * @return The number of the tracked events.
+    */
+   int size() {
+      return events.size();
+   }
+
+   /**
+    * Evicts the expired events and the oldest events over the limit.
+    *
+    * @param now The current time in nanoseconds.
+    */
+   private void evict(final long now) {
+      nextEviction = now + timeToLive;
+      events.values().removeIf(mark -> now - mark.time > timeToLive);
+
+      if (events.size() > limit) {
+         // make some room so that the following events do not evict again
+         final int kept = limit - limit / 10;
+         int overflow = events.size() - kept;
+         log.warn("Too many CDI events waiting for their observer, forgetting {} of them.", overflow);
+
+         final long oldest = events.values().stream().mapToLong(mark -> now - mark.time).sorted().skip(kept).findFirst().orElse(0);
+         final Iterator<Mark> iterator = events.values().iterator();
+         while (overflow > 0 && iterator.hasNext()) {
+            if (now - iterator.next().time >= oldest) {
+               iterator.remove();
+               overflow--;
+            }
+         }
+      }
+   }
+
+   /**
+    * Key comparing the events by their identity.
+    */
+   private static final class IdentityKey {
+
+      /**
+       * The event.
+       */
+      private final Object event;
+
+      /**
+       * Creates the key of the event.
+       *
+       * @param event The event.
+       */
+      private IdentityKey(final Object event) {
+         this.event = event;
+      }
+
+      @Override
+      public boolean equals(final Object o) {
+         return o instanceof IdentityKey && ((IdentityKey) o).event == event;
+      }
+
+      @Override
+      public int hashCode() {
+         return System.identityHashCode(event);
+      }
+   }
+
+   /**
+    * How many times an event is tracked and since when. The instances are compared by their identity, so that they can be
+    * replaced atomically.
+    */
+   private static final class Mark {
+
+      /**
+       * How many times the event is tracked.
+       */
+      private final int count;
+
+      /**
+       * Time in nanoseconds when the event was tracked last time.
+       */
+      private final long time;
+
+      /**
+       * Creates the mark.
+       *
+       * @param count How many times the event is tracked.
+       * @param time  Time in nanoseconds when the event was tracked last time.
+       */
+      private Mark(final int count, final long time) {
+         this.count = count;
+         this.time = time;
+      }
+   }
+}
@@ -25,30 +25,40 @@ import org.jboss.bus.api.FederatedBusException;
 import org.jboss.bus.api.Message;
 import org.jboss.bus.api.MessageTranslator;
 import org.jboss.bus.internal.AbstractFederatedBus;
+import org.jboss.bus.internal.ExecutorStrategy;
 import org.kie.api.KieServices;
-import org.kie.api.builder.KieBuilder;
-import org.kie.api.builder.KieFileSystem;
-import org.kie.api.builder.KieRepository;
-import org.kie.api.io.KieResources;
-import org.kie.api.io.Resource;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
-import org.kie.api.runtime.rule.EntryPoint;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Federated bus based on Drools rules system that drives message forwarding.
  *
+ * Compiled rules are cached by their content and shared by all buses in the JVM. When the KJAR directory is set,
+ * the compiled rules are also stored there and loaded on the next start instead of being compiled again.
+ * Without the rules file, the bus uses a KIE module (a jar with <code>META-INF/kmodule.xml</code>) identified by its release id
+ * or found on the classpath, optionally selecting a named base or session. Drools 6 builds the bases of any KIE module,
+ * KJARs included, when its container is first created, so drools-compiler is needed at runtime in all the modes.
+ *
+ * By default, the rules are evaluated in a single session synchronously in the thread of the translator that delivered
+ * the message. In the partitioned mode, there are multiple sessions created from the same rules, each evaluating the
+ * messages in its own thread. Messages with the same value of the partition key (a header or a property) are always
+ * evaluated by the same session. Rules correlating multiple messages must therefore only correlate messages with
+ * the same partition key.
+ *
+ * The engine mode determines how the rules are fired. By default, all rules are fired after each inserted message. In the
+ * fire until halt mode, messages are inserted as they arrive while a dedicated engine thread keeps firing the rules.
+ * In the micro-batch mode, up to the batch size of messages, or as many as arrive within the batch wait time (in microseconds),
+ * are inserted before all rules are fired once.
+ *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
 public class DroolsFederatedBus extends AbstractFederatedBus {
@@ -58,69 +68,107 @@ public class DroolsFederatedBus extends AbstractFederatedBus {
     */
    private static final Logger log = LogManager.getLogger(DroolsFederatedBus.class);
 
+   /**
+    * How long to wait for the sessions to evaluate the remaining messages when the bus stops.
+    */
+   private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
    /**
     * Name of the rules file or resource.
     */
    private String rules;
 
    /**
-    * Allows to establish an iterative conversation with the engine.
+    * Release id (groupId:artifactId:version) of a KIE module with the rules, used when the rules file is not set.
+    */
+   private String releaseId;
+
+   /**
+    * Name of the base from the KIE module used to create the sessions, the default base when not set.
+    */
+   private String kieBaseName;
+
+   /**
+    * Name of the session from the KIE module, takes precedence over the base name.
+    */
+   private String kieSessionName;
+
+   /**
+    * Directory where the compiled rules are stored to be reused by later starts, null not to store them.
+    */
+   private String kjarDirectory;
+
+   /**
+    * Sessions evaluating the rules.
+    */
+   private SessionPartition[] partitions = new SessionPartition[0];
+
+   /**
+    * Number of sessions evaluating the rules in parallel, 0 to evaluate the rules synchronously in a single session.
+    */
+   private int partitionCount = 0;
+
+   /**
+    * Name of the header or property whose value determines the session evaluating a message.
     */
-   private KieSession kieSession;
+   private String partitionKey;
 
    /**
-    * Abstract channel through which data are inserted into the engine.
+    * Capacity of the inbound queue of each session.
     */
-   private EntryPoint inbound;
+   private int partitionQueueSize = 10_000;
+
+   /**
+    * How the rules engine is driven.
+    */
+   private EngineMode engineMode = EngineMode.FIRE_ALL_RULES;
+
+   /**
+    * Maximum number of messages inserted before the rules are fired in the micro-batch mode.
+    */
+   private int batchSize = 100;
+
+   /**
+    * Maximum time in microseconds to wait for a full batch in the micro-batch mode.
+    */
+   private long batchWaitTime = 100;
 
    /**
     * Allows to execute submitted task using a thread pool.
     */
-   private ThreadPoolExecutor executor;
+   private ExecutorService executor;
 
    /**
     * Size of the thread pool.
     */
    private int threadPoolSize = 10;
 
+   /**
+    * How the submitted tasks are executed.
+    */
+   private ExecutorStrategy executorStrategy = ExecutorStrategy.FIXED;
+
    @Override
    public void start() {
-      executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadPoolSize);
+      executor = executorStrategy.newExecutor(threadPoolSize);
       try {
-         final KieServices kieServices = KieServices.Factory.get();
+         final KieContainer kieContainer = getKieContainer();
 
-         final KieRepository krp = kieServices.getRepository();
-         final KieFileSystem kfs = kieServices.newKieFileSystem();
-         final KieResources krs = kieServices.getResources();
+         // micro batches are always collected in a queue, even for a single session
+         final int queueSize = partitionCount > 0 || engineMode == EngineMode.MICRO_BATCH ? partitionQueueSize : 0;
+         partitions = new SessionPartition[Math.max(1, partitionCount)];
+         for (int i = 0; i < partitions.length; i++) {
+            final KieSession kieSession = newKieSession(kieContainer);
+            partitions[i] = new SessionPartition(kieSession, "drools-bus-partition-" + i, queueSize, engineMode, batchSize, batchWaitTime);
 
-         final Path rulesPath = getRulesPath();
-         if (rulesPath == null) {
-            throw new IOException("Unable to locate rules resource: " + rules);
+            kieSession.registerChannel("outbound", message -> sendOutbound((Message) message));
+            messageTranslators.forEach(translator -> kieSession.registerChannel(translator.getName(), message -> sendOutbound(translator, (Message) message)));
          }
 
-         final String fileContent = new String(Files.readAllBytes(rulesPath), Charset.defaultCharset());
-         final Resource rulesResource = krs.newReaderResource(new StringReader(fileContent), Charset.defaultCharset().name());
-
-         kfs.write("src/main/resources/org/jboss/bus/rules.drl", rulesResource);
-         final KieBuilder kb = kieServices.newKieBuilder(kfs);
-         kb.buildAll();
-
-         // Check the builder for errors
-         if (kb.getResults().hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
-            if (log.isErrorEnabled()) {
-               log.error(kb.getResults().getMessages().toString());
-            }
-            throw new IOException("Error compiling rules.");
+         for (final SessionPartition partition : partitions) {
+            partition.start();
          }
 
-         KieContainer kieContainer = kieServices.newKieContainer(krp.getDefaultReleaseId());
-         kieSession = kieContainer.newKieSession();
-         inbound = kieSession.getEntryPoint("inbound");
-
-         kieSession.registerChannel("outbound", message -> sendOutbound((Message) message));
-
-         messageTranslators.forEach(translator -> kieSession.registerChannel(translator.getName(), message -> sendOutbound(translator, (Message) message)));
-
          super.start();
          log.info("Drools federated bus started!");
       } catch (IOException e) {
@@ -132,8 +180,12 @@ public class DroolsFederatedBus extends AbstractFederatedBus {
    public void stop() {
       super.stop();
 
-      kieSession.unregisterChannel("outbound");
-      kieSession.dispose();
+      final long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+      for (final SessionPartition partition : partitions) {
+         partition.stop(Math.max(1, deadline - System.currentTimeMillis()));
+      }
+
+      executor.shutdown();
    }
 
    /**
@@ -154,6 +206,128 @@ public class DroolsFederatedBus extends AbstractFederatedBus {
       this.rules = rules;
    }
 
+   /**
+    * Gets the directory where the compiled rules are stored.
+    *
+    * @return The directory where the compiled rules are stored, null when they are not stored.
+    */
+   public String getKjarDirectory() {
+      return kjarDirectory;
+   }
+
+   /**
+    * Sets the directory where the compiled rules are stored to be reused by later starts.
+    *
+    * @param kjarDirectory The directory where the compiled rules are stored, null not to store them.
+    */
+   public void setKjarDirectory(final String kjarDirectory) {
+      this.kjarDirectory = kjarDirectory;
+   }
+
+   /**
+    * Gets the container with the rules. The rules file is compiled (or taken from the cache) when it is set, otherwise
+    * a KIE module is used, either the one with the configured release id or the classpath one. The rules of a KIE module
+    * are compiled here as well.
+    *
+    * @return The container with the rules.
+    * @throws IOException When the rules cannot be located or compiled.
+    */
+   private KieContainer getKieContainer() throws IOException {
+      if (rules != null) {
+         final Path rulesPath = getRulesPath();
+         if (rulesPath == null) {
+            throw new IOException("Unable to locate rules resource: " + rules);
+         }
+
+         final String fileContent = new String(Files.readAllBytes(rulesPath), Charset.defaultCharset());
+         return KieContainerCache.getContainer(fileContent, kjarDirectory);
+      }
+
+      final KieServices kieServices = KieServices.Factory.get();
+      if (releaseId != null) {
+         final String[] gav = releaseId.split(":");
+         if (gav.length != 3) {
+            throw new IOException("Invalid release id, expected groupId:artifactId:version: " + releaseId);
+         }
+
+         return kieServices.newKieContainer(kieServices.newReleaseId(gav[0], gav[1], gav[2]));
+      }
+
+      return kieServices.getKieClasspathContainer();
+   }
+
+   /**
+    * Creates a new session from the container, either the configured named session, a session of the configured base,
+    * or the default session.
+    *
+    * @param kieContainer The container with the rules.
+    * @return The new session.
+    */
+   private KieSession newKieSession(final KieContainer kieContainer) {
+      if (kieSessionName != null) {
+         return kieContainer.newKieSession(kieSessionName);
+      } else if (kieBaseName != null) {
+         return kieContainer.getKieBase(kieBaseName).newKieSession();
+      }
+
+      return kieContainer.newKieSession();
+   }
+
+   /**
+    * Gets the release id of the KIE module with the rules.
+    *
+    * @return The release id in the form of groupId:artifactId:version.
+    */
+   public String getReleaseId() {
+      return releaseId;
+   }
+
+   /**
+    * Sets the release id of the KIE module with the rules. The KIE module is looked up in the local Maven repository
+    * and on the classpath. Only used when the rules file is not set.
+    *
+    * @param releaseId The release id in the form of groupId:artifactId:version.
+    */
+   public void setReleaseId(final String releaseId) {
+      this.releaseId = releaseId;
+   }
+
+   /**
+    * Gets the name of the base from the KIE module used to create the sessions.
+    *
+    * @return The name of the base.
+    */
+   public String getKieBase() {
+      return kieBaseName;
+   }
+
+   /**
+    * Sets the name of the base from the KIE module used to create the sessions.
+    *
+    * @param kieBase The name of the base.
+    */
+   public void setKieBase(final String kieBase) {
+      this.kieBaseName = kieBase;
+   }
+
+   /**
+    * Gets the name of the session from the KIE module.
+    *
+    * @return The name of the session.
+    */
+   public String getKieSession() {
+      return kieSessionName;
+   }
+
+   /**
+    * Sets the name of the session from the KIE module. Takes precedence over the base name.
+    *
+    * @param kieSession The name of the session.
+    */
+   public void setKieSession(final String kieSession) {
+      this.kieSessionName = kieSession;
+   }
+
    /**
     * Gets the path to rules.
     *
@@ -206,8 +380,36 @@ public class DroolsFederatedBus extends AbstractFederatedBus {
 
    @Override
    public void processMessage(Message message) {
-      inbound.insert(message);
-      kieSession.fireAllRules();
+      if (partitions.length == 1) {
+         partitions[0].submit(message);
+      } else {
+         partitions[partition(message)].submit(message);
+      }
+   }
+
+   /**
+    * Computes the partition of a message from the value of the partition key. Messages without the key are partitioned by their origin.
+    *
+    * @param message The message.
+    * @return The partition index.
+    */
+   private int partition(final Message message) {
+      Object key = null;
+      if (partitionKey != null) {
+         key = message.getHeader(partitionKey);
+         if (key == null) {
+            key = message.getProperty(partitionKey);
+         }
+      }
+      if (key == null) {
+         key = message.getHeader(Message.FROM_HEADER);
+      }
+      if (key == null) {
+         return 0;
+      }
+
+      final int hash = key.hashCode();
+      return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % partitions.length;
    }
 
    /**
@@ -227,4 +429,131 @@ public class DroolsFederatedBus extends AbstractFederatedBus {
    public void setThreadPoolSize(final int threadPoolSize) {
       this.threadPoolSize = threadPoolSize;
    }
+
+   /**
+    * Gets the strategy of executing the submitted tasks.
+    *
+    * @return The executor strategy.
+    */
+   public ExecutorStrategy getExecutorStrategy() {
+      return executorStrategy;
+   }
+
+   /**
+    * Sets the strategy of executing the submitted tasks.
+    *
+    * @param executorStrategy The executor strategy.
+    */
+   public void setExecutorStrategy(final ExecutorStrategy executorStrategy) {
+      this.executorStrategy = executorStrategy;
+   }
+
+   /**
+    * Gets the number of sessions evaluating the rules in parallel.
+    *
+    * @return The number of sessions, 0 when the rules are evaluated synchronously in a single session.
+    */
+   public int getPartitions() {
+      return partitionCount;
+   }
+
+   /**
+    * Sets the number of sessions evaluating the rules in parallel.
+    *
+    * @param partitions The number of sessions, 0 to evaluate the rules synchronously in a single session.
+    */
+   public void setPartitions(final int partitions) {
+      this.partitionCount = partitions;
+   }
+
+   /**
+    * Gets the name of the header or property whose value determines the session evaluating a message.
+    *
+    * @return The partition key.
+    */
+   public String getPartitionKey() {
+      return partitionKey;
+   }
+
+   /**
+    * Sets the name of the header or property whose value determines the session evaluating a message.
+    * Messages without such a header or property are partitioned by their origin.
+    *
+    * @param partitionKey The partition key.
+    */
+   public void setPartitionKey(final String partitionKey) {
+      this.partitionKey = partitionKey;
+   }
+
+   /**
+    * Gets the capacity of the inbound queue of each session.
+    *
+    * @return The capacity of the inbound queues.
+    */
+   public int getPartitionQueueSize() {
+      return partitionQueueSize;
+   }
+
+   /**
+    * Sets the capacity of the inbound queue of each session. Translators are blocked while the queue is full.
+    *
+    * @param partitionQueueSize The capacity of the inbound queues.
+    */
+   public void setPartitionQueueSize(final int partitionQueueSize) {
+      this.partitionQueueSize = partitionQueueSize;
+   }
+
+   /**
+    * Gets how the rules engine is driven.
+    *
+    * @return The engine mode.
+    */
+   public EngineMode getEngineMode() {
+      return engineMode;
+   }
+
+   /**
+    * Sets how the rules engine is driven.
+    *
+    * @param engineMode The engine mode.
+    */
+   public void setEngineMode(final EngineMode engineMode) {
+      this.engineMode = engineMode;
+   }
+
+   /**
+    * Gets the maximum number of messages inserted before the rules are fired in the micro-batch mode.
+    *
+    * @return The maximum batch size.
+    */
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   /**
+    * Sets the maximum number of messages inserted before the rules are fired in the micro-batch mode.
+    *
+    * @param batchSize The maximum batch size.
+    */
+   public void setBatchSize(final int batchSize) {
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Gets the maximum time in microseconds to wait for a full batch in the micro-batch mode.
+    *
+    * @return The maximum batch wait time in microseconds.
+    */
+   public long getBatchWaitTime() {
+      return batchWaitTime;
+   }
+
+   /**
+    * Sets the maximum time in microseconds to wait for a full batch in the micro-batch mode.
+    *
+    * @param batchWaitTime The maximum batch wait time in microseconds.
+    */
+   public void setBatchWaitTime(final long batchWaitTime) {
+      this.batchWaitTime = batchWaitTime;
+   }
 }
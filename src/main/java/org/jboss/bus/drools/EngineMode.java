@@ -0,0 +1,43 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.drools;
+
+/**
+ * How the rules engine is driven when messages are inserted into a session.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum EngineMode {
+
+   /**
+    * Fires all rules after each inserted message.
+    */
+   FIRE_ALL_RULES,
+
+   /**
+    * Messages are inserted as they arrive and a dedicated engine thread keeps firing the rules until the session halts.
+    */
+   FIRE_UNTIL_HALT,
+
+   /**
+    * Inserts up to the batch size of messages, or as many as arrive within the batch wait time, before firing all rules.
+    */
+   MICRO_BATCH
+}
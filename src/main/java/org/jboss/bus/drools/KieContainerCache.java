@@ -0,0 +1,180 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.drools;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of compiled rules shared by all Drools federated buses in the JVM. Containers are keyed by the SHA-256 hash
+ * of the rules content so that buses using the same rules compile them only once. The compiled KJAR can optionally be stored
+ * in a directory and loaded from there on the next start, skipping the compilation entirely.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+final class KieContainerCache {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(KieContainerCache.class);
+
+   /**
+    * Group id of the generated KJARs.
+    */
+   private static final String GROUP_ID = "org.jboss.bus";
+
+   /**
+    * Version of the generated KJARs.
+    */
+   private static final String VERSION = "1.0.0";
+
+   /**
+    * Compiled containers by the hash of the rules content.
+    */
+   private static final Map<String, KieContainer> containers = new ConcurrentHashMap<>();
+
+   /**
+    * Utility class, not to be instantiated.
+    */
+   private KieContainerCache() {
+   }
+
+   /**
+    * Gets a container with the given rules compiled, compiling them only when they are neither cached in memory
+    * nor stored in the KJAR directory.
+    *
+    * @param rulesContent  Content of the rules file.
+    * @param kjarDirectory Directory where compiled KJARs are stored, null not to store them.
+    * @return The container with the compiled rules.
+    * @throws IOException When the rules cannot be compiled or the KJAR cannot be stored.
+    */
+   static KieContainer getContainer(final String rulesContent, final String kjarDirectory) throws IOException {
+      final String hash = hash(rulesContent);
+
+      final KieContainer container = containers.get(hash);
+      if (container != null) {
+         return container;
+      }
+
+      synchronized (KieContainerCache.class) {
+         KieContainer created = containers.get(hash);
+         if (created == null) {
+            created = createContainer(hash, rulesContent, kjarDirectory);
+            containers.put(hash, created);
+         }
+
+         return created;
+      }
+   }
+
+   /**
+    * Removes all cached containers from memory. Stored KJARs are kept.
+    */
+   static void clear() {
+      containers.clear();
+   }
+
+   /**
+    * Loads the container from the KJAR directory or compiles the rules.
+    *
+    * @param hash          Hash of the rules content.
+    * @param rulesContent  Content of the rules file.
+    * @param kjarDirectory Directory where compiled KJARs are stored, null not to store them.
+    * @return The new container with the compiled rules.
+    * @throws IOException When the rules cannot be compiled or the KJAR cannot be stored.
+    */
+   private static KieContainer createContainer(final String hash, final String rulesContent, final String kjarDirectory) throws IOException {
+      final KieServices kieServices = KieServices.Factory.get();
+      final ReleaseId releaseId = kieServices.newReleaseId(GROUP_ID, "rules-" + hash, VERSION);
+      final Path kjarPath = kjarDirectory != null ? Paths.get(kjarDirectory, releaseId.getArtifactId() + "-" + VERSION + ".jar") : null;
+
+      if (kjarPath != null && Files.isRegularFile(kjarPath)) {
+         log.info("Loading compiled rules from {}", kjarPath);
+         kieServices.getRepository().addKieModule(kieServices.getResources().newFileSystemResource(kjarPath.toFile()));
+
+         return kieServices.newKieContainer(releaseId);
+      }
+
+      final KieFileSystem kfs = kieServices.newKieFileSystem();
+      final Resource rulesResource = kieServices.getResources().newReaderResource(new StringReader(rulesContent), StandardCharsets.UTF_8.name());
+
+      kfs.generateAndWritePomXML(releaseId);
+      kfs.write("src/main/resources/org/jboss/bus/rules.drl", rulesResource);
+      final KieBuilder kb = kieServices.newKieBuilder(kfs);
+      kb.buildAll();
+
+      // Check the builder for errors
+      if (kb.getResults().hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
+         if (log.isErrorEnabled()) {
+            log.error(kb.getResults().getMessages().toString());
+         }
+         throw new IOException("Error compiling rules.");
+      }
+
+      if (kjarPath != null) {
+         final Path tempPath = Files.createTempFile(Files.createDirectories(kjarPath.getParent()), releaseId.getArtifactId(), ".tmp");
+         Files.write(tempPath, ((InternalKieModule) kb.getKieModule()).getBytes());
+         Files.move(tempPath, kjarPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         log.info("Compiled rules stored in {}", kjarPath);
+      }
+
+      return kieServices.newKieContainer(releaseId);
+   }
+
+   /**
+    * Computes the hexadecimal SHA-256 hash of the rules content.
+    *
+    * @param rulesContent Content of the rules file.
+    * @return The hash of the rules.
+    */
+   private static String hash(final String rulesContent) {
+      try {
+         final byte[] digest = MessageDigest.getInstance("SHA-256").digest(rulesContent.getBytes(StandardCharsets.UTF_8));
+         final StringBuilder sb = new StringBuilder(digest.length * 2);
+         for (final byte b : digest) {
+            sb.append(String.format("%02x", b));
+         }
+
+         return sb.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 is not supported by the JVM.", e);
+      }
+   }
+}
@@ -0,0 +1,256 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.drools;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.Message;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.EntryPoint;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single Drools session evaluating the rules for a part of the inbound messages. An asynchronous partition inserts
+ * the messages into the session from its own thread, a synchronous one from the thread that submitted the message.
+ * In both cases, the session is never used by more than one thread at a time. The only exception is the fire until halt
+ * mode, where the messages are inserted directly by the submitting threads while the partition thread keeps firing the rules.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+class SessionPartition implements Runnable {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(SessionPartition.class);
+
+   /**
+    * How long the partition thread waits for a message before checking whether it should stop.
+    */
+   private static final long POLL_TIMEOUT_MS = 100;
+
+   /**
+    * Allows to establish an iterative conversation with the engine.
+    */
+   private final KieSession kieSession;
+
+   /**
+    * Abstract channel through which data are inserted into the engine.
+    */
+   private final EntryPoint inbound;
+
+   /**
+    * How the rules are fired.
+    */
+   private final EngineMode engineMode;
+
+   /**
+    * Maximum number of messages inserted before the rules are fired in the micro-batch mode.
+    */
+   private final int batchSize;
+
+   /**
+    * Maximum time in microseconds to wait for a full batch in the micro-batch mode.
+    */
+   private final long batchWaitTime;
+
+   /**
+    * Messages waiting to be inserted into the session, null when the messages are inserted directly.
+    */
+   private final BlockingQueue<Message> queue;
+
+   /**
+    * Thread firing the rules, null for a synchronous partition.
+    */
+   private final Thread thread;
+
+   /**
+    * Whether the partition accepts new messages.
+    */
+   private volatile boolean running = true;
+
+   /**
+    * Creates a new session partition.
+    *
+    * @param kieSession    The session evaluating the rules.
+    * @param name          Name of the partition used to name its thread.
+    * @param queueSize     Capacity of the queue of inbound messages, 0 for a synchronous partition. Ignored in the fire until halt mode.
+    * @param engineMode    How the rules are fired.
+    * @param batchSize     Maximum number of messages inserted before the rules are fired in the micro-batch mode.
+    * @param batchWaitTime Maximum time in microseconds to wait for a full batch in the micro-batch mode.
+    */
+   SessionPartition(final KieSession kieSession, final String name, final int queueSize, final EngineMode engineMode, final int batchSize, final long batchWaitTime) {
+      this.kieSession = kieSession;
+      inbound = kieSession.getEntryPoint("inbound");
+      this.engineMode = engineMode;
+      this.batchSize = Math.max(1, batchSize);
+      this.batchWaitTime = batchWaitTime;
+
+      if (engineMode != EngineMode.FIRE_UNTIL_HALT && queueSize > 0) {
+         queue = new LinkedBlockingQueue<>(queueSize);
+      } else {
+         queue = null;
+      }
+
+      if (queue != null || engineMode == EngineMode.FIRE_UNTIL_HALT) {
+         thread = new Thread(this, name);
+         thread.setDaemon(true);
+      } else {
+         thread = null;
+      }
+   }
+
+   /**
+    * Gets the session of this partition, used to register channels before the partition starts.
+    *
+    * @return The session of this partition.
+    */
+   KieSession getKieSession() {
+      return kieSession;
+   }
+
+   /**
+    * Starts the partition thread if there is any.
+    */
+   void start() {
+      if (thread != null) {
+         thread.start();
+      }
+   }
+
+   /**
+    * Submits a message to be evaluated by the rules. Blocks while the queue of an asynchronous partition is full.
+    *
+    * @param message The message to be evaluated.
+    */
+   void submit(final Message message) {
+      if (engineMode == EngineMode.FIRE_UNTIL_HALT) {
+         inbound.insert(message);
+      } else if (queue == null) {
+         synchronized (this) {
+            process(message);
+         }
+      } else {
+         try {
+            queue.put(message);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for a free space in the queue of partition {}, message dropped.", thread.getName());
+         }
+      }
+   }
+
+   @Override
+   public void run() {
+      if (engineMode == EngineMode.FIRE_UNTIL_HALT) {
+         kieSession.fireUntilHalt();
+         return;
+      }
+
+      while (running || !queue.isEmpty()) {
+         try {
+            final Message message = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (message != null) {
+               if (engineMode == EngineMode.MICRO_BATCH) {
+                  processBatch(message);
+               } else {
+                  process(message);
+               }
+            }
+         } catch (InterruptedException e) {
+            return;
+         } catch (RuntimeException e) {
+            log.error("Unable to evaluate rules: ", e);
+         }
+      }
+   }
+
+   /**
+    * Inserts the message and the messages following it into the session until the batch is full or the batch wait time
+    * elapses, then fires the rules once for the whole batch.
+    *
+    * @param first The first message of the batch.
+    * @throws InterruptedException When interrupted while waiting for more messages.
+    */
+   private void processBatch(final Message first) throws InterruptedException {
+      inbound.insert(first);
+
+      final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(batchWaitTime);
+      int count = 1;
+      while (count < batchSize) {
+         final long remaining = deadline - System.nanoTime();
+         final Message message = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+         if (message == null) {
+            break;
+         }
+         inbound.insert(message);
+         count++;
+      }
+
+      kieSession.fireAllRules();
+   }
+
+   /**
+    * Inserts the message into the session and fires the rules.
+    *
+    * @param message The message to be evaluated.
+    */
+   private void process(final Message message) {
+      inbound.insert(message);
+      kieSession.fireAllRules();
+   }
+
+   /**
+    * Stops the partition. Waits for the already submitted messages to be evaluated and disposes the session.
+    *
+    * @param timeout Maximum time in milliseconds to wait for the submitted messages.
+    */
+   void stop(final long timeout) {
+      running = false;
+
+      if (thread != null) {
+         if (engineMode == EngineMode.FIRE_UNTIL_HALT) {
+            kieSession.halt();
+         }
+
+         try {
+            thread.join(timeout);
+            if (thread.isAlive()) {
+               log.warn("Partition {} did not evaluate all messages before the bus stopped.", thread.getName());
+               thread.interrupt();
+               thread.join(POLL_TIMEOUT_MS);
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      synchronized (this) {
+         if (thread != null && !thread.isAlive()) {
+            // fire the rules for messages inserted after the engine was halted or an interrupted batch
+            kieSession.fireAllRules();
+         }
+         kieSession.dispose();
+      }
+   }
+}
@@ -69,5 +69,4 @@ abstract public class AbstractFederatedBus implements FederatedBus {
    public void setCompoundContext(CompoundContext compoundContext) {
       this.compoundContext = compoundContext;
    }
-
 }
@@ -20,13 +20,19 @@
 package org.jboss.bus.internal;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jboss.bus.api.CompoundContext;
 import org.jboss.bus.api.FederatedBus;
+import org.jboss.bus.api.Message;
 import org.jboss.bus.api.MessageTranslator;
 
+import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +42,11 @@ import java.util.stream.Collectors;
  */
 abstract public class AbstractMessageTranslator implements MessageTranslator {
 
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(AbstractMessageTranslator.class);
+
    /**
     * Federated bus to which message translator is registered.
     */
@@ -56,6 +67,16 @@ abstract public class AbstractMessageTranslator implements MessageTranslator {
     */
    protected String name = "abstract";
 
+   /**
+    * Pool of inbound messages, null when the messages are not pooled.
+    */
+   private MessagePool messagePool;
+
+   /**
+    * Maximum number of free messages kept in the pool, 0 when the messages are not pooled.
+    */
+   private int messagePoolSize = 0;
+
    /**
     * Tells whether the message was already processed through the federated bus so that it is not processed
     * repeatedly.
@@ -71,6 +92,53 @@ abstract public class AbstractMessageTranslator implements MessageTranslator {
       this.federatedBus = federatedBus;
    }
 
+   /**
+    * Parses the per endpoint overrides of a setting.
+    *
+    * @param overrides Comma separated list of endpoint=value pairs, may be null.
+    * @return The values by the endpoints. Pairs without a value are logged and skipped.
+    */
+   protected static Map<String, String> parseOverrides(final String overrides) {
+      final Map<String, String> result = new HashMap<>();
+      if (overrides != null) {
+         for (final String override : overrides.split(",")) {
+            // endpoint URIs may contain parameters, the value follows the last equals sign
+            final int separator = override.lastIndexOf('=');
+            if (separator > 0) {
+               result.put(override.substring(0, separator).trim(), override.substring(separator + 1).trim());
+            } else if (!override.trim().isEmpty()) {
+               log.warn("Ignoring endpoint setting without a value: {}", override);
+            }
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Gets the value of a setting of an endpoint, parsed from its override when there is any.
+    *
+    * @param overrides    The overrides of the setting by the endpoints.
+    * @param endpoint     The endpoint.
+    * @param parser       Parses the override value, throws {@link IllegalArgumentException} on invalid values.
+    * @param defaultValue The value of the setting when it is not overridden or the override is invalid.
+    * @param <T>          Type of the setting.
+    * @return The value of the setting for the endpoint.
+    */
+   protected <T> T parseOverride(final Map<String, String> overrides, final String endpoint, final Function<String, T> parser, final T defaultValue) {
+      final String value = overrides.get(endpoint);
+      if (value == null) {
+         return defaultValue;
+      }
+
+      try {
+         return parser.apply(value);
+      } catch (IllegalArgumentException e) {
+         log.warn("Ignoring invalid setting {} of endpoint {} in translator {}, using {}.", value, endpoint, getName(), defaultValue);
+         return defaultValue;
+      }
+   }
+
    /**
     * Gets input endpoints as a set.
     * @return The set of input endpoints.
@@ -103,6 +171,42 @@ abstract public class AbstractMessageTranslator implements MessageTranslator {
       this.outputEndpoints = Arrays.asList(outputEndpoints.split(",")).stream().map(StringUtils::strip).collect(Collectors.toSet());
    }
 
+   /**
+    * Creates a new inbound message, taking it from the message pool when pooling is enabled.
+    *
+    * @param payload The message payload.
+    * @param headers The message headers.
+    * @return The new message.
+    */
+   protected Message newMessage(final Serializable payload, final MessageHeaders headers) {
+      if (messagePool == null) {
+         return new MessageImpl(payload, headers);
+      }
+
+      final Message message = messagePool.acquire();
+      message.setPayload(payload);
+      message.setHeaders(headers);
+      return message;
+   }
+
+   /**
+    * Gets the maximum number of free messages kept in the pool of inbound messages.
+    * @return The pool size, 0 when the messages are not pooled.
+    */
+   public int getMessagePoolSize() {
+      return messagePoolSize;
+   }
+
+   /**
+    * Sets the maximum number of free messages kept in the pool of inbound messages. Pooling saves allocations
+    * on buses that release the messages after delivery.
+    * @param messagePoolSize The pool size, 0 not to pool the messages.
+    */
+   public void setMessagePoolSize(final int messagePoolSize) {
+      this.messagePoolSize = messagePoolSize;
+      this.messagePool = messagePoolSize > 0 ? new MessagePool(messagePoolSize) : null;
+   }
+
    @Override
    public String getName() {
       return name;
@@ -0,0 +1,78 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+/**
+ * Common functionality of the federated buses routing the messages with a {@link RouteTable}. Holds the routing settings
+ * configured for the bus.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+abstract public class AbstractRoutingFederatedBus extends AbstractFederatedBus {
+
+   /**
+    * Explicit routes of messages, see {@link RouteTable} for the format.
+    */
+   protected String routes;
+
+   /**
+    * Whether messages should not be sent back to the translator they came from.
+    */
+   protected boolean skipSource = true;
+
+   /**
+    * Gets the explicit routes of messages.
+    *
+    * @return The explicit routes of messages.
+    */
+   public String getRoutes() {
+      return routes;
+   }
+
+   /**
+    * Sets the explicit routes of messages in the form <code>source -&gt; destination1, destination2; source2 -&gt; destination3</code>.
+    * The source is either a translator name or a from header value, the destinations are translator names.
+    *
+    * @param routes The explicit routes of messages.
+    */
+   public void setRoutes(final String routes) {
+      this.routes = routes;
+   }
+
+   /**
+    * Tells whether messages are not sent back to the translator they came from.
+    *
+    * @return True if and only if the source translator is skipped.
+    */
+   public boolean isSkipSource() {
+      return skipSource;
+   }
+
+   /**
+    * Sets whether messages should not be sent back to the translator they came from. Enabled by default, translators
+    * bridging their own endpoints then need an explicit route, see {@link RouteTable}.
+    *
+    * @param skipSource True to skip the source translator.
+    */
+   public void setSkipSource(final boolean skipSource) {
+      this.skipSource = skipSource;
+   }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * First-in first-out storage of messages on a local disk. Each message is serialized to a separate file named by its
+ * sequence number. Not thread safe, the owner is responsible for synchronization.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+class DiskSpill {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(DiskSpill.class);
+
+   /**
+    * Directory where the messages are stored.
+    */
+   private final Path directory;
+
+   /**
+    * Sequence number of the oldest stored message.
+    */
+   private long head = 0;
+
+   /**
+    * Sequence number of the next message to be stored.
+    */
+   private long tail = 0;
+
+   /**
+    * Number of stored messages, readable without synchronization.
+    */
+   private volatile long size = 0;
+
+   /**
+    * Creates a new disk spill in a fresh directory.
+    *
+    * @param parentDirectory Directory in which the spill directory is created, system temporary directory is used when null.
+    * @param prefix          Prefix of the spill directory name.
+    * @throws FederatedBusException When it was not possible to create the spill directory.
+    */
+   DiskSpill(final String parentDirectory, final String prefix) throws FederatedBusException {
+      try {
+         if (parentDirectory == null) {
+            directory = Files.createTempDirectory(prefix);
+         } else {
+            final Path parent = Paths.get(parentDirectory);
+            Files.createDirectories(parent);
+            directory = Files.createTempDirectory(parent, prefix);
+         }
+      } catch (IOException e) {
+         throw new FederatedBusException("Unable to create spill directory: ", e);
+      }
+   }
+
+   /**
+    * Stores a message at the end of the spill.
+    *
+    * @param message The message to be stored.
+    * @throws IOException When it was not possible to write the message.
+    */
+   void write(final Message message) throws IOException {
+      try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file(tail))))) {
+         oos.writeObject(message);
+      } catch (IOException e) {
+         Files.deleteIfExists(file(tail));
+         throw e;
+      }
+      tail++;
+      size = tail - head;
+   }
+
+   /**
+    * Removes and returns the oldest stored message.
+    *
+    * @return The oldest message or null when the spill is empty.
+    * @throws IOException When it was not possible to read the message. The message is lost in such a case.
+    */
+   Message read() throws IOException {
+      if (head == tail) {
+         return null;
+      }
+
+      final Path file = file(head++);
+      size = tail - head;
+
+      try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+         return (Message) ois.readObject();
+      } catch (ClassNotFoundException e) {
+         throw new IOException("Unable to deserialize spilled message: ", e);
+      } finally {
+         Files.deleteIfExists(file);
+      }
+   }
+
+   /**
+    * Gets the number of stored messages.
+    *
+    * @return The number of stored messages.
+    */
+   long size() {
+      return size;
+   }
+
+   /**
+    * Deletes all stored messages and the spill directory.
+    */
+   void close() {
+      try {
+         while (head < tail) {
+            Files.deleteIfExists(file(head++));
+         }
+         size = 0;
+         Files.deleteIfExists(directory);
+      } catch (IOException e) {
+         log.warn("Unable to clean spill directory {}: ", directory, e);
+      }
+   }
+
+   private Path file(final long sequence) {
+      return directory.resolve(Long.toString(sequence));
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Strategy of executing the tasks of a federated bus, typically the delivery of messages to translators.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum ExecutorStrategy {
+
+   /**
+    * Fixed size thread pool.
+    */
+   FIXED,
+
+   /**
+    * Work-stealing fork-join pool with the given parallelism.
+    */
+   WORK_STEALING,
+
+   /**
+    * A new virtual thread for each task. Requires JDK 21 or newer, falls back to a fixed size thread pool otherwise.
+    */
+   VIRTUAL;
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(ExecutorStrategy.class);
+
+   /**
+    * Factory method of the virtual thread executor, null when virtual threads are not supported by the running JDK.
+    */
+   private static final Method virtualThreadExecutorFactory = findVirtualThreadExecutorFactory();
+
+   /**
+    * Creates a new executor according to this strategy.
+    *
+    * @param threadPoolSize Size of the thread pool or parallelism of the pool. Ignored by virtual threads.
+    * @return The new executor.
+    */
+   public ExecutorService newExecutor(final int threadPoolSize) {
+      switch (this) {
+         case WORK_STEALING:
+            return Executors.newWorkStealingPool(threadPoolSize);
+         case VIRTUAL:
+            if (isVirtualThreadSupported()) {
+               try {
+                  return (ExecutorService) virtualThreadExecutorFactory.invoke(null);
+               } catch (ReflectiveOperationException e) {
+                  log.warn("Unable to create virtual thread executor, using a fixed thread pool: ", e);
+               }
+            } else {
+               log.warn("Virtual threads are not supported by this JDK, using a fixed thread pool.");
+            }
+            return Executors.newFixedThreadPool(threadPoolSize);
+         default:
+            return Executors.newFixedThreadPool(threadPoolSize);
+      }
+   }
+
+   /**
+    * Tells whether the running JDK supports virtual threads.
+    *
+    * @return True if and only if virtual threads are supported.
+    */
+   public static boolean isVirtualThreadSupported() {
+      return virtualThreadExecutorFactory != null;
+   }
+
+   private static Method findVirtualThreadExecutorFactory() {
+      try {
+         return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      } catch (NoSuchMethodException e) {
+         return null;
+      }
+   }
+}
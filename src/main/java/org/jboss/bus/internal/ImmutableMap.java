@@ -0,0 +1,416 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable map of message headers or properties. The map is never modified once created, derived maps with an added,
+ * replaced or removed entry are created by {@link #with(String, Object)} and {@link #without(String)}. Values are shared
+ * by reference between the original and the derived maps.
+ *
+ * The key and value arrays have a spare capacity. The first map derived by adding an entry appends it to the shared arrays
+ * (and to the shared hash table) in place, the original map keeps seeing its own entries only. Building a map entry
+ * by entry thus costs amortized constant time per entry, only a map derived from an older snapshot, a replaced value
+ * or a removed entry copies the arrays.
+ *
+ * Up to 8 entries are searched sequentially in the inline arrays, larger maps are additionally indexed by an open
+ * addressing hash table.
+ *
+ * @param <V> Type of the values.
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class ImmutableMap<V> extends AbstractMap<String, V> implements Serializable {
+
+   private static final long serialVersionUID = -5514279316284418731L;
+
+   /**
+    * Maximum number of entries searched sequentially, larger maps are indexed by a hash table.
+    */
+   private static final int INLINE_LIMIT = 8;
+
+   /**
+    * Capacity of the arrays of a map created by adding an entry to a map without a spare capacity.
+    */
+   private static final int MIN_CAPACITY = 4;
+
+   /**
+    * The empty map.
+    */
+   private static final ImmutableMap<?> EMPTY = new ImmutableMap<>(new String[0], new Object[0]);
+
+   /**
+    * Keys of the entries, possibly shared with the derived maps and longer than the number of the entries.
+    */
+   private final String[] keys;
+
+   /**
+    * Values of the entries, at the same indexes as their keys.
+    */
+   private final Object[] values;
+
+   /**
+    * Number of entries of this map.
+    */
+   private final int size;
+
+   /**
+    * Open addressing hash table of the key indexes increased by one (0 marks an empty slot), null for small maps
+    * that are searched sequentially. Shared with the derived maps, indexes beyond the size of this map are ignored.
+    */
+   private final int[] table;
+
+   /**
+    * Number of entries used in the shared arrays, only the map with exactly this size may append an entry in place.
+    * Null when the arrays cannot be appended to.
+    */
+   private final transient AtomicInteger used;
+
+   /**
+    * Creates a map with the given entries. The arrays are not copied.
+    *
+    * @param keys   Keys of the entries.
+    * @param values Values of the entries.
+    */
+   private ImmutableMap(final String[] keys, final Object[] values) {
+      this(keys, values, keys.length, keys.length > INLINE_LIMIT ? buildTable(keys, keys.length, keys.length) : null, null);
+   }
+
+   /**
+    * Creates a map sharing the given arrays.
+    *
+    * @param keys   Keys of the entries.
+    * @param values Values of the entries.
+    * @param size   Number of entries of the map.
+    * @param table  Hash table of the keys, null for small maps.
+    * @param used   Number of entries used in the shared arrays, null when the arrays cannot be appended to.
+    */
+   private ImmutableMap(final String[] keys, final Object[] values, final int size, final int[] table, final AtomicInteger used) {
+      this.keys = keys;
+      this.values = values;
+      this.size = size;
+      this.table = table;
+      this.used = used;
+   }
+
+   /**
+    * Builds the open addressing hash table of the given keys.
+    *
+    * @param keys     The keys.
+    * @param size     Number of the keys.
+    * @param capacity Maximum number of the keys the table must be able to index.
+    * @return The hash table.
+    */
+   private static int[] buildTable(final String[] keys, final int size, final int capacity) {
+      final int[] table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+      for (int i = 0; i < size; i++) {
+         index(table, keys[i], i);
+      }
+
+      return table;
+   }
+
+   /**
+    * Adds the key index to the hash table.
+    *
+    * @param table The hash table.
+    * @param key   The key.
+    * @param index Index of the key.
+    */
+   private static void index(final int[] table, final String key, final int index) {
+      final int mask = table.length - 1;
+      int slot = hash(key) & mask;
+      while (table[slot] != 0) {
+         slot = (slot + 1) & mask;
+      }
+      table[slot] = index + 1;
+   }
+
+   /**
+    * Spreads the hash code of the key over the lower bits used to index the hash table.
+    *
+    * @param key The key.
+    * @return The spread hash code.
+    */
+   private static int hash(final Object key) {
+      final int h = key.hashCode();
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * Gets the empty map.
+    *
+    * @param <V> Type of the values.
+    * @return The empty map.
+    */
+   @SuppressWarnings("unchecked")
+   public static <V> ImmutableMap<V> empty() {
+      return (ImmutableMap<V>) EMPTY;
+   }
+
+   /**
+    * Creates a map with the given entries, taking over the arrays without copying them. The caller must not modify
+    * the arrays afterwards.
+    *
+    * @param keys   Distinct keys of the entries.
+    * @param values Values of the entries, at the same indexes as their keys.
+    * @param <V>    Type of the values.
+    * @return The map.
+    */
+   public static <V> ImmutableMap<V> of(final String[] keys, final Object[] values) {
+      if (keys.length != values.length) {
+         throw new IllegalArgumentException("Keys and values differ in length.");
+      }
+
+      return keys.length == 0 ? empty() : new ImmutableMap<>(keys, values);
+   }
+
+   /**
+    * Gets an immutable map with the same entries as the given map. Returns the map itself when it is already immutable.
+    *
+    * @param map The map to be copied, null for an empty map.
+    * @param <V> Type of the values.
+    * @return The immutable map.
+    */
+   @SuppressWarnings("unchecked")
+   public static <V> ImmutableMap<V> copyOf(final Map<?, ? extends V> map) {
+      if (map instanceof ImmutableMap) {
+         return (ImmutableMap<V>) map;
+      }
+      if (map == null || map.isEmpty()) {
+         return empty();
+      }
+
+      final String[] keys = new String[map.size()];
+      final Object[] values = new Object[map.size()];
+      int i = 0;
+      for (final Map.Entry<?, ? extends V> entry : map.entrySet()) {
+         keys[i] = String.valueOf(entry.getKey());
+         values[i] = entry.getValue();
+         i++;
+      }
+
+      return new ImmutableMap<>(keys, values);
+   }
+
+   /**
+    * Derives a map with the given entry added or replaced.
+    *
+    * @param key   Key of the entry.
+    * @param value Value of the entry.
+    * @return The derived map, this map when it already contains the same value.
+    */
+   public ImmutableMap<V> with(final String key, final V value) {
+      Objects.requireNonNull(key, "Key must not be null.");
+
+      final int index = indexOf(key);
+      if (index >= 0) {
+         if (values[index] == value) {
+            return this;
+         }
+
+         // the keys and the table stay the same, the new values cannot be appended to as the keys are shared
+         final Object[] newValues = Arrays.copyOf(values, size);
+         newValues[index] = value;
+         return new ImmutableMap<>(keys, newValues, size, table, null);
+      }
+
+      final int newSize = size + 1;
+      if (used != null && size < keys.length && used.compareAndSet(size, newSize)) {
+         keys[size] = key;
+         values[size] = value;
+
+         int[] newTable = table;
+         if (newTable != null) {
+            index(newTable, key, size);
+         } else if (newSize > INLINE_LIMIT) {
+            newTable = buildTable(keys, newSize, keys.length);
+         }
+
+         return new ImmutableMap<>(keys, values, newSize, newTable, used);
+      }
+
+      final int capacity = Math.max(MIN_CAPACITY, newSize * 2);
+      final String[] newKeys = new String[capacity];
+      final Object[] newValues = new Object[capacity];
+      System.arraycopy(keys, 0, newKeys, 0, size);
+      System.arraycopy(values, 0, newValues, 0, size);
+      newKeys[size] = key;
+      newValues[size] = value;
+
+      return new ImmutableMap<>(newKeys, newValues, newSize, newSize > INLINE_LIMIT ? buildTable(newKeys, newSize, capacity) : null, new AtomicInteger(newSize));
+   }
+
+   /**
+    * Derives a map without the given entry.
+    *
+    * @param key Key of the entry.
+    * @return The derived map, this map when it does not contain the key.
+    */
+   public ImmutableMap<V> without(final String key) {
+      final int index = indexOf(key);
+      if (index < 0) {
+         return this;
+      }
+      if (size == 1) {
+         return empty();
+      }
+
+      final String[] newKeys = new String[size - 1];
+      final Object[] newValues = new Object[size - 1];
+      System.arraycopy(keys, 0, newKeys, 0, index);
+      System.arraycopy(values, 0, newValues, 0, index);
+      System.arraycopy(keys, index + 1, newKeys, index, size - index - 1);
+      System.arraycopy(values, index + 1, newValues, index, size - index - 1);
+      return new ImmutableMap<>(newKeys, newValues);
+   }
+
+   /**
+    * Finds the index of the given key.
+    *
+    * @param key The key.
+    * @return The index of the key, -1 when there is no such key.
+    */
+   private int indexOf(final Object key) {
+      if (table != null) {
+         if (key == null) {
+            return -1;
+         }
+
+         final int mask = table.length - 1;
+         for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = table[slot] - 1;
+            // entries appended by the derived maps are not part of this map
+            if (index < size && keys[index].equals(key)) {
+               return index;
+            }
+         }
+
+         return -1;
+      }
+
+      for (int i = 0; i < size; i++) {
+         if (keys[i].equals(key)) {
+            return i;
+         }
+      }
+
+      return -1;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V get(final Object key) {
+      final int index = indexOf(key);
+      return index >= 0 ? (V) values[index] : null;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V getOrDefault(final Object key, final V defaultValue) {
+      final int index = indexOf(key);
+      return index >= 0 ? (V) values[index] : defaultValue;
+   }
+
+   @Override
+   public boolean containsKey(final Object key) {
+      return indexOf(key) >= 0;
+   }
+
+   @Override
+   public int size() {
+      return size;
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void forEach(final BiConsumer<? super String, ? super V> action) {
+      for (int i = 0; i < size; i++) {
+         action.accept(keys[i], (V) values[i]);
+      }
+   }
+
+   @Override
+   public Set<Map.Entry<String, V>> entrySet() {
+      return new AbstractSet<Map.Entry<String, V>>() {
+         @Override
+         public Iterator<Map.Entry<String, V>> iterator() {
+            return new Iterator<Map.Entry<String, V>>() {
+               private int next = 0;
+
+               @Override
+               public boolean hasNext() {
+                  return next < size;
+               }
+
+               @Override
+               @SuppressWarnings("unchecked")
+               public Map.Entry<String, V> next() {
+                  if (next >= size) {
+                     throw new NoSuchElementException();
+                  }
+
+                  final Map.Entry<String, V> entry = new SimpleImmutableEntry<>(keys[next], (V) values[next]);
+                  next++;
+                  return entry;
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return size;
+         }
+      };
+   }
+
+   /**
+    * Serializes only the entries of this map, not the spare capacity of the shared arrays.
+    *
+    * @return The map to be serialized instead of this one.
+    */
+   private Object writeReplace() {
+      return keys.length == size && values.length == size ? this : new ImmutableMap<>(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+   }
+
+   /**
+    * Keeps the empty map a singleton after deserialization.
+    *
+    * @return The map to be used instead of the deserialized one.
+    */
+   private Object readResolve() {
+      return size == 0 ? EMPTY : this;
+   }
+}
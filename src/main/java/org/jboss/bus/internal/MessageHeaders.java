@@ -0,0 +1,356 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.jboss.bus.api.Message;
+import org.jboss.bus.api.MessageTranslator;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable headers of a message. The headers used by the bus itself ({@link Message#FROM_HEADER}, {@link Message#SOURCE_HEADER}
+ * and {@link MessageTranslator#TRANSLATOR_SIGNATURE}) have reserved slots, so setting them never copies the user headers.
+ * The user headers are kept in an {@link ImmutableMap} shared by all headers derived from each other, or in a read-only
+ * view of the headers of an inbound message that is copied only when the headers are derived. A header with a reserved
+ * slot may be set to null, which is different from not being set at all.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class MessageHeaders extends AbstractMap<String, Object> implements Serializable {
+
+   private static final long serialVersionUID = 4014718826541232618L;
+
+   /**
+    * Number of the reserved slots.
+    */
+   private static final int RESERVED_SLOTS = 3;
+
+   /**
+    * Names of the headers with reserved slots, at the indexes of their slots.
+    */
+   private static final String[] RESERVED_NAMES = { Message.FROM_HEADER, Message.SOURCE_HEADER, MessageTranslator.TRANSLATOR_SIGNATURE };
+
+   /**
+    * Headers without any entry.
+    */
+   private static final MessageHeaders EMPTY = new MessageHeaders(new Object[RESERVED_SLOTS], 0, ImmutableMap.empty());
+
+   /**
+    * Values of the headers with reserved slots.
+    */
+   private final Object[] reserved;
+
+   /**
+    * Bit mask of the set reserved slots, a slot can be set to null.
+    */
+   private final int present;
+
+   /**
+    * The other headers, either an {@link ImmutableMap} or a read-only view.
+    */
+   private final Map<String, Object> user;
+
+   /**
+    * Creates the headers. The array is not copied.
+    *
+    * @param reserved Values of the headers with reserved slots.
+    * @param present  Bit mask of the set reserved slots.
+    * @param user     The other headers.
+    */
+   private MessageHeaders(final Object[] reserved, final int present, final Map<String, Object> user) {
+      this.reserved = reserved;
+      this.present = present;
+      this.user = user;
+   }
+
+   /**
+    * Gets the bit of the reserved slot in the mask of the set slots.
+    *
+    * @param slot Index of the reserved slot.
+    * @return The bit of the slot.
+    */
+   private static int bit(final int slot) {
+      return 1 << slot;
+   }
+
+   /**
+    * Tells whether the reserved slot is set.
+    *
+    * @param slot Index of the reserved slot.
+    * @return True if and only if the slot is set, possibly to null.
+    */
+   private boolean isSet(final int slot) {
+      return (present & bit(slot)) != 0;
+   }
+
+   /**
+    * Gets the headers without any entry.
+    *
+    * @return The empty headers.
+    */
+   public static MessageHeaders empty() {
+      return EMPTY;
+   }
+
+   /**
+    * Creates headers with the given origin of the message. This is what translators typically need for inbound messages.
+    *
+    * @param headers Other headers of the message, null when there are none.
+    * @param from    Value of {@link Message#FROM_HEADER}, null not to set it.
+    * @param source  Value of {@link Message#SOURCE_HEADER}, null not to set it.
+    * @return The headers.
+    */
+   public static MessageHeaders of(final Map<String, Object> headers, final String from, final String source) {
+      final MessageHeaders base = copyOf(headers);
+      final Object[] reserved = base.reserved.clone();
+      reserved[0] = from;
+      reserved[1] = source;
+
+      return new MessageHeaders(reserved, origin(base.present, from, source), base.user);
+   }
+
+   /**
+    * Sets the bits of the origin slots in the mask of the set slots according to the given origin of the message.
+    *
+    * @param present Bit mask of the set reserved slots.
+    * @param from    Value of {@link Message#FROM_HEADER}, null when it is not set.
+    * @param source  Value of {@link Message#SOURCE_HEADER}, null when it is not set.
+    * @return The bit mask of the set reserved slots.
+    */
+   private static int origin(final int present, final String from, final String source) {
+      int origin = present & ~(bit(0) | bit(1));
+      if (from != null) {
+         origin |= bit(0);
+      }
+      if (source != null) {
+         origin |= bit(1);
+      }
+
+      return origin;
+   }
+
+   /**
+    * Creates headers with the given origin of the message on top of a read-only view of the other headers.
+    * The view is not copied until new headers are derived, so it must not change afterwards. Falls back to copying
+    * the view when it contains a header with a reserved slot.
+    *
+    * @param view   Read-only view of the other headers of the message.
+    * @param from   Value of {@link Message#FROM_HEADER}, null not to set it.
+    * @param source Value of {@link Message#SOURCE_HEADER}, null not to set it.
+    * @return The headers.
+    */
+   public static MessageHeaders view(final Map<String, Object> view, final String from, final String source) {
+      for (final String name : RESERVED_NAMES) {
+         if (view.containsKey(name)) {
+            return of(view, from, source);
+         }
+      }
+
+      return new MessageHeaders(new Object[] { from, source, null }, origin(0, from, source), view);
+   }
+
+   /**
+    * Gets immutable headers with the same entries as the given map. Returns the map itself when it already is
+    * an instance of this class.
+    *
+    * @param headers The headers to be copied, null for no headers.
+    * @return The immutable headers.
+    */
+   public static MessageHeaders copyOf(final Map<String, Object> headers) {
+      if (headers instanceof MessageHeaders) {
+         return (MessageHeaders) headers;
+      }
+      if (headers == null || headers.isEmpty()) {
+         return EMPTY;
+      }
+
+      ImmutableMap<Object> user = ImmutableMap.copyOf(headers);
+      Object[] reserved = null;
+      int present = 0;
+      for (int i = 0; i < RESERVED_SLOTS; i++) {
+         if (user.containsKey(RESERVED_NAMES[i])) {
+            if (reserved == null) {
+               reserved = new Object[RESERVED_SLOTS];
+            }
+            reserved[i] = user.get(RESERVED_NAMES[i]);
+            present |= bit(i);
+            user = user.without(RESERVED_NAMES[i]);
+         }
+      }
+
+      return new MessageHeaders(reserved == null ? EMPTY.reserved : reserved, present, user);
+   }
+
+   /**
+    * Gets the index of the reserved slot of the header.
+    *
+    * @param name Name of the header.
+    * @return The index of the reserved slot, -1 when the header does not have any.
+    */
+   private static int slot(final Object name) {
+      // the constants are typically passed in, so the identity check is enough most of the time
+      for (int i = 0; i < RESERVED_SLOTS; i++) {
+         if (RESERVED_NAMES[i] == name) {
+            return i;
+         }
+      }
+      for (int i = 0; i < RESERVED_SLOTS; i++) {
+         if (RESERVED_NAMES[i].equals(name)) {
+            return i;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Derives headers with the given header added or replaced.
+    *
+    * @param name  Name of the header.
+    * @param value Value of the header.
+    * @return The derived headers.
+    */
+   public MessageHeaders with(final String name, final Object value) {
+      final int slot = slot(name);
+      if (slot >= 0) {
+         if (isSet(slot) && reserved[slot] == value) {
+            return this;
+         }
+
+         final Object[] newReserved = reserved.clone();
+         newReserved[slot] = value;
+         return new MessageHeaders(newReserved, present | bit(slot), user);
+      }
+
+      final ImmutableMap<Object> newUser = ImmutableMap.<Object>copyOf(user).with(name, value);
+      return newUser == user ? this : new MessageHeaders(reserved, present, newUser);
+   }
+
+   @Override
+   public Object get(final Object key) {
+      final int slot = slot(key);
+      return slot >= 0 ? reserved[slot] : user.get(key);
+   }
+
+   @Override
+   public Object getOrDefault(final Object key, final Object defaultValue) {
+      final int slot = slot(key);
+      if (slot >= 0) {
+         return isSet(slot) ? reserved[slot] : defaultValue;
+      }
+
+      return user.getOrDefault(key, defaultValue);
+   }
+
+   @Override
+   public boolean containsKey(final Object key) {
+      final int slot = slot(key);
+      return slot >= 0 ? isSet(slot) : user.containsKey(key);
+   }
+
+   @Override
+   public int size() {
+      return Integer.bitCount(present) + user.size();
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return present == 0 && user.isEmpty();
+   }
+
+   @Override
+   public void forEach(final BiConsumer<? super String, ? super Object> action) {
+      for (int i = 0; i < RESERVED_SLOTS; i++) {
+         if (isSet(i)) {
+            action.accept(RESERVED_NAMES[i], reserved[i]);
+         }
+      }
+      user.forEach(action);
+   }
+
+   @Override
+   public Set<Map.Entry<String, Object>> entrySet() {
+      return new AbstractSet<Map.Entry<String, Object>>() {
+         @Override
+         public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+               private int slot = nextSlot(0);
+               private final Iterator<Map.Entry<String, Object>> userIterator = user.entrySet().iterator();
+
+               private int nextSlot(int from) {
+                  while (from < RESERVED_SLOTS && !isSet(from)) {
+                     from++;
+                  }
+                  return from;
+               }
+
+               @Override
+               public boolean hasNext() {
+                  return slot < RESERVED_SLOTS || userIterator.hasNext();
+               }
+
+               @Override
+               public Map.Entry<String, Object> next() {
+                  if (slot < RESERVED_SLOTS) {
+                     final Map.Entry<String, Object> entry = new SimpleImmutableEntry<>(RESERVED_NAMES[slot], reserved[slot]);
+                     slot = nextSlot(slot + 1);
+                     return entry;
+                  }
+                  if (!userIterator.hasNext()) {
+                     throw new NoSuchElementException();
+                  }
+
+                  return userIterator.next();
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return MessageHeaders.this.size();
+         }
+      };
+   }
+
+   /**
+    * Serializes a copy of the headers when the other headers are just a view.
+    *
+    * @return The headers to be serialized instead of these.
+    */
+   private Object writeReplace() {
+      return user instanceof ImmutableMap ? this : new MessageHeaders(reserved, present, ImmutableMap.copyOf(user));
+   }
+
+   /**
+    * Keeps the empty headers a singleton after deserialization.
+    *
+    * @return The headers to be used instead of the deserialized ones.
+    */
+   private Object readResolve() {
+      return isEmpty() ? EMPTY : this;
+   }
+}
@@ -22,38 +22,55 @@ package org.jboss.bus.internal;
 import org.jboss.bus.api.Message;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.UnaryOperator;
 
 /**
+ * Default message implementation. Headers and properties are kept in immutable maps that are atomically replaced
+ * on each change, so readers always see a consistent snapshot and neither readers nor writers take a lock. Messages
+ * without properties share a single empty map. {@link #getProperties()} returns a live {@link Properties} view
+ * that reads and replaces the immutable map.
+ *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
 public class MessageImpl implements Message {
 
    private static final long serialVersionUID = -6537640529774091119L;
 
+   /**
+    * Atomically replaces the headers without taking a lock.
+    */
+   private static final AtomicReferenceFieldUpdater<MessageImpl, MessageHeaders> HEADERS = AtomicReferenceFieldUpdater.newUpdater(MessageImpl.class, MessageHeaders.class, "headers");
+
+   /**
+    * Atomically replaces the properties without taking a lock.
+    */
+   @SuppressWarnings("rawtypes")
+   private static final AtomicReferenceFieldUpdater<MessageImpl, ImmutableMap> PROPERTIES = AtomicReferenceFieldUpdater.newUpdater(MessageImpl.class, ImmutableMap.class, "properties");
+
    /**
     * Headers of the message.
     */
-   private Map<String, Object> headers;
+   private volatile MessageHeaders headers;
 
    /**
-    * Properties of the message.
+    * Properties of the message, shared empty map until a property is set.
     */
-   private Properties properties;
+   private volatile ImmutableMap<String> properties;
 
    /**
     * Message payload.
     */
-   private Serializable payload = null;
+   private volatile Serializable payload = null;
 
    /**
     * Creates an empty message.
     */
    public MessageImpl() {
-      this.headers = new HashMap<>();
-      this.properties = new Properties();
+      this.headers = MessageHeaders.empty();
+      this.properties = ImmutableMap.empty();
    }
 
    /**
@@ -66,29 +83,93 @@ public class MessageImpl implements Message {
       this.payload = payload;
    }
 
+   /**
+    * Creates a message with the given payload and headers. Translators use this to create inbound messages with
+    * a single allocation of the headers.
+    *
+    * @param payload Message payload.
+    * @param headers Headers of the message.
+    */
+   public MessageImpl(final Serializable payload, final MessageHeaders headers) {
+      this(payload, headers, ImmutableMap.empty());
+   }
+
+   /**
+    * Creates a message sharing the given payload, headers and properties.
+    *
+    * @param payload    Message payload.
+    * @param headers    Headers of the message.
+    * @param properties Properties of the message.
+    */
+   private MessageImpl(final Serializable payload, final MessageHeaders headers, final ImmutableMap<String> properties) {
+      this.payload = payload;
+      this.headers = headers;
+      this.properties = properties;
+   }
+
+   /**
+    * Clears the payload, the headers and the properties so that the message can be reused.
+    */
+   void clear() {
+      payload = null;
+      headers = MessageHeaders.empty();
+      properties = ImmutableMap.empty();
+   }
+
    @Override
    public Properties getProperties() {
+      return new MessageProperties(this);
+   }
+
+   /**
+    * Gets the current properties.
+    *
+    * @return The current properties.
+    */
+   ImmutableMap<String> properties() {
       return properties;
    }
 
+   /**
+    * Atomically replaces the properties with the result of the given function. The function may be called more than once
+    * when the properties are modified concurrently.
+    *
+    * @param update Derives the new properties from the current ones.
+    * @return The properties replaced by the update.
+    */
+   ImmutableMap<String> updateProperties(final UnaryOperator<ImmutableMap<String>> update) {
+      ImmutableMap<String> current;
+      do {
+         current = properties;
+      } while (!PROPERTIES.compareAndSet(this, current, update.apply(current)));
+
+      return current;
+   }
+
    @Override
    public void setProperties(final Properties properties) {
-      this.properties = properties;
+      ImmutableMap<String> newProperties = ImmutableMap.empty();
+      if (properties != null) {
+         for (final String name : properties.stringPropertyNames()) {
+            newProperties = newProperties.with(name, properties.getProperty(name));
+         }
+      }
+      this.properties = newProperties;
    }
 
    @Override
    public String getProperty(final String name) {
-      return properties.getProperty(name);
+      return properties.get(name);
    }
 
    @Override
    public String getProperty(final String name, final String defaultValue) {
-      return properties.getProperty(name, defaultValue);
+      return properties.getOrDefault(name, defaultValue);
    }
 
    @Override
    public void setProperty(final String name, final String value) {
-      properties.setProperty(name, value);
+      updateProperties(current -> current.with(name, value));
    }
 
    @Override
@@ -103,7 +184,7 @@ public class MessageImpl implements Message {
 
    @Override
    public void setHeaders(final Map<String, Object> headers) {
-      this.headers = headers;
+      this.headers = MessageHeaders.copyOf(headers);
    }
 
    @Override
@@ -113,7 +194,10 @@ public class MessageImpl implements Message {
 
    @Override
    public void setHeader(final String name, final Object value) {
-      headers.put(name, value);
+      MessageHeaders current;
+      do {
+         current = headers;
+      } while (!HEADERS.compareAndSet(this, current, current.with(name, value)));
    }
 
    @Override
@@ -126,6 +210,21 @@ public class MessageImpl implements Message {
       return headers.getOrDefault(name, defaultValue);
    }
 
+   @Override
+   public Message withHeader(final String name, final Object value) {
+      return new MessageImpl(payload, headers.with(name, value), properties);
+   }
+
+   @Override
+   public Message withProperty(final String name, final String value) {
+      return new MessageImpl(payload, headers, properties.with(name, value));
+   }
+
+   @Override
+   public Message withPayload(final Serializable payload) {
+      return new MessageImpl(payload, headers, properties);
+   }
+
    @Override
    public boolean equals(final Object obj) {
       if (obj == null) {
@@ -134,14 +233,14 @@ public class MessageImpl implements Message {
       if (!(obj instanceof Message)) {
          return false;
       }
-      final MessageImpl m = (MessageImpl) obj;
-      if (!payload.equals(m.payload)) {
+      final Message m = (Message) obj;
+      if (!payload.equals(m.getPayload())) {
          return false;
       }
-      if (!headers.equals(m.headers)) {
+      if (!headers.equals(m.getHeaders())) {
          return false;
       }
-      if (!properties.equals(m.properties)) {
+      if (m instanceof MessageImpl ? !properties.equals(((MessageImpl) m).properties) : !getProperties().equals(m.getProperties())) {
          return false;
       }
       return true;
@@ -0,0 +1,124 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.jboss.bus.api.Message;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of reusable messages. When there is no free message, a new one is created. When the pool is full,
+ * the recycled message is left to the garbage collector. Neither acquiring nor recycling a message allocates any memory.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class MessagePool {
+
+   /**
+    * Free messages.
+    */
+   private final BlockingQueue<PooledMessage> messages;
+
+   /**
+    * Number of messages created because the pool was empty.
+    */
+   private final AtomicLong createdCount = new AtomicLong(0);
+
+   /**
+    * Creates a new pool.
+    *
+    * @param size Maximum number of free messages kept in the pool.
+    */
+   public MessagePool(final int size) {
+      if (size < 1) {
+         throw new IllegalArgumentException("Message pool size must be positive.");
+      }
+
+      messages = new ArrayBlockingQueue<>(size);
+   }
+
+   /**
+    * Acquires an empty message. The caller owns the only reference to the message.
+    *
+    * @return The empty message.
+    */
+   public PooledMessage acquire() {
+      PooledMessage message = messages.poll();
+      if (message == null) {
+         createdCount.incrementAndGet();
+         message = new PooledMessage(this);
+      }
+
+      message.acquired();
+      return message;
+   }
+
+   /**
+    * Returns a released message to the pool.
+    *
+    * @param message The released message.
+    */
+   void recycle(final PooledMessage message) {
+      messages.offer(message);
+   }
+
+   /**
+    * Gets the number of free messages in the pool.
+    *
+    * @return The number of free messages.
+    */
+   public int getFreeCount() {
+      return messages.size();
+   }
+
+   /**
+    * Gets the number of messages created because the pool was empty.
+    *
+    * @return The number of created messages.
+    */
+   public long getCreatedCount() {
+      return createdCount.get();
+   }
+
+   /**
+    * Adds references to the message if it is pooled.
+    *
+    * @param message The message.
+    * @param count   Number of the added references.
+    */
+   public static void retain(final Message message, final int count) {
+      if (message instanceof PooledMessage) {
+         ((PooledMessage) message).retain(count);
+      }
+   }
+
+   /**
+    * Releases a single reference to the message if it is pooled.
+    *
+    * @param message The message.
+    */
+   public static void release(final Message message) {
+      if (message instanceof PooledMessage) {
+         ((PooledMessage) message).release();
+      }
+   }
+}
@@ -0,0 +1,434 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Live {@link Properties} view of the properties of a {@link MessageImpl}. Reads see the current properties of the message,
+ * writes replace them atomically the same way as {@link MessageImpl#setProperty(String, String)} does. The view keeps
+ * the existing code working that modifies the properties returned by {@link MessageImpl#getProperties()}.
+ *
+ * Only string keys and values can be stored. The compute and merge methods may call the given function more than once
+ * when the properties are modified concurrently. Iterators see the properties at the time of their creation and support
+ * removal, entries cannot be modified.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+final class MessageProperties extends Properties {
+
+   private static final long serialVersionUID = 4425816212264807327L;
+
+   /**
+    * The message whose properties are viewed.
+    */
+   private final transient MessageImpl message;
+
+   /**
+    * Creates a view of the properties of the given message.
+    *
+    * @param message The message.
+    */
+   MessageProperties(final MessageImpl message) {
+      this.message = message;
+   }
+
+   /**
+    * Gets the current properties of the message.
+    *
+    * @return The current properties.
+    */
+   private ImmutableMap<String> current() {
+      return message.properties();
+   }
+
+   /**
+    * Gets a plain copy of the current properties.
+    *
+    * @return The copy.
+    */
+   private Properties copy() {
+      final Properties copy = new Properties();
+      current().forEach(copy::setProperty);
+      return copy;
+   }
+
+   @Override
+   public String getProperty(final String key) {
+      return current().get(key);
+   }
+
+   @Override
+   public String getProperty(final String key, final String defaultValue) {
+      return current().getOrDefault(key, defaultValue);
+   }
+
+   @Override
+   public Object setProperty(final String key, final String value) {
+      return put(key, value);
+   }
+
+   @Override
+   public Enumeration<?> propertyNames() {
+      return keys();
+   }
+
+   @Override
+   public Set<String> stringPropertyNames() {
+      return Collections.unmodifiableSet(current().keySet());
+   }
+
+   @Override
+   public int size() {
+      return current().size();
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return current().isEmpty();
+   }
+
+   @Override
+   public Enumeration<Object> keys() {
+      return Collections.enumeration(Collections.<Object>unmodifiableSet(current().keySet()));
+   }
+
+   @Override
+   public Enumeration<Object> elements() {
+      return Collections.enumeration(Collections.<Object>unmodifiableCollection(current().values()));
+   }
+
+   @Override
+   public boolean contains(final Object value) {
+      return containsValue(value);
+   }
+
+   @Override
+   public boolean containsValue(final Object value) {
+      return current().containsValue(value);
+   }
+
+   @Override
+   public boolean containsKey(final Object key) {
+      return current().containsKey(key);
+   }
+
+   @Override
+   public Object get(final Object key) {
+      return current().get(key);
+   }
+
+   @Override
+   public Object getOrDefault(final Object key, final Object defaultValue) {
+      final ImmutableMap<String> properties = current();
+      return properties.containsKey(key) ? properties.get(key) : defaultValue;
+   }
+
+   @Override
+   public Object put(final Object key, final Object value) {
+      final String name = (String) key;
+      final String newValue = (String) value;
+      if (name == null || newValue == null) {
+         throw new NullPointerException("Property names and values must not be null.");
+      }
+
+      return message.updateProperties(properties -> properties.with(name, newValue)).get(name);
+   }
+
+   @Override
+   public Object remove(final Object key) {
+      if (!(key instanceof String)) {
+         return null;
+      }
+
+      return message.updateProperties(properties -> properties.without((String) key)).get(key);
+   }
+
+   @Override
+   public void putAll(final Map<?, ?> map) {
+      map.forEach(this::put);
+   }
+
+   @Override
+   public void clear() {
+      message.updateProperties(properties -> ImmutableMap.empty());
+   }
+
+   @Override
+   public Object putIfAbsent(final Object key, final Object value) {
+      final String name = (String) key;
+      final String newValue = (String) value;
+      if (name == null || newValue == null) {
+         throw new NullPointerException("Property names and values must not be null.");
+      }
+
+      return message.updateProperties(properties -> properties.containsKey(name) ? properties : properties.with(name, newValue)).get(name);
+   }
+
+   @Override
+   public boolean remove(final Object key, final Object value) {
+      final boolean[] removed = new boolean[1];
+      computeIfPresent(key, (k, oldValue) -> {
+         removed[0] = oldValue.equals(value);
+         return removed[0] ? null : oldValue;
+      });
+      return removed[0];
+   }
+
+   @Override
+   public boolean replace(final Object key, final Object oldValue, final Object newValue) {
+      final boolean[] replaced = new boolean[1];
+      computeIfPresent(key, (k, value) -> {
+         replaced[0] = value.equals(oldValue);
+         return replaced[0] ? newValue : value;
+      });
+      return replaced[0];
+   }
+
+   @Override
+   public Object replace(final Object key, final Object value) {
+      final Object[] previous = new Object[1];
+      computeIfPresent(key, (k, oldValue) -> {
+         previous[0] = oldValue;
+         return value;
+      });
+      return previous[0];
+   }
+
+   @Override
+   public Object computeIfAbsent(final Object key, final Function<? super Object, ?> mappingFunction) {
+      return compute(key, (k, oldValue) -> oldValue == null ? mappingFunction.apply(k) : oldValue);
+   }
+
+   @Override
+   public Object computeIfPresent(final Object key, final BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+      return compute(key, (k, oldValue) -> oldValue == null ? null : remappingFunction.apply(k, oldValue));
+   }
+
+   @Override
+   public Object compute(final Object key, final BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+      final String name = (String) key;
+      if (name == null) {
+         throw new NullPointerException("Property names must not be null.");
+      }
+
+      final String[] newValue = new String[1];
+      message.updateProperties(properties -> {
+         newValue[0] = (String) remappingFunction.apply(name, properties.get(name));
+         return newValue[0] == null ? properties.without(name) : properties.with(name, newValue[0]);
+      });
+      return newValue[0];
+   }
+
+   @Override
+   public Object merge(final Object key, final Object value, final BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+      if (value == null) {
+         throw new NullPointerException("Property values must not be null.");
+      }
+
+      return compute(key, (k, oldValue) -> oldValue == null ? value : remappingFunction.apply(oldValue, value));
+   }
+
+   @Override
+   public void replaceAll(final BiFunction<? super Object, ? super Object, ?> function) {
+      message.updateProperties(properties -> {
+         ImmutableMap<String> replaced = properties;
+         for (final Map.Entry<String, String> property : properties.entrySet()) {
+            replaced = replaced.with(property.getKey(), (String) function.apply(property.getKey(), property.getValue()));
+         }
+         return replaced;
+      });
+   }
+
+   @Override
+   public void forEach(final BiConsumer<? super Object, ? super Object> action) {
+      current().forEach(action);
+   }
+
+   @Override
+   public Set<Object> keySet() {
+      return new AbstractSet<Object>() {
+         @Override
+         public Iterator<Object> iterator() {
+            final Iterator<Map.Entry<Object, Object>> entries = entrySet().iterator();
+            return new Iterator<Object>() {
+               @Override
+               public boolean hasNext() {
+                  return entries.hasNext();
+               }
+
+               @Override
+               public Object next() {
+                  return entries.next().getKey();
+               }
+
+               @Override
+               public void remove() {
+                  entries.remove();
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return MessageProperties.this.size();
+         }
+
+         @Override
+         public boolean contains(final Object key) {
+            return containsKey(key);
+         }
+
+         @Override
+         public boolean remove(final Object key) {
+            return MessageProperties.this.remove(key) != null;
+         }
+
+         @Override
+         public void clear() {
+            MessageProperties.this.clear();
+         }
+      };
+   }
+
+   @Override
+   public Collection<Object> values() {
+      return new AbstractCollection<Object>() {
+         @Override
+         public Iterator<Object> iterator() {
+            final Iterator<Map.Entry<Object, Object>> entries = entrySet().iterator();
+            return new Iterator<Object>() {
+               @Override
+               public boolean hasNext() {
+                  return entries.hasNext();
+               }
+
+               @Override
+               public Object next() {
+                  return entries.next().getValue();
+               }
+
+               @Override
+               public void remove() {
+                  entries.remove();
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return MessageProperties.this.size();
+         }
+
+         @Override
+         public void clear() {
+            MessageProperties.this.clear();
+         }
+      };
+   }
+
+   @Override
+   public Set<Map.Entry<Object, Object>> entrySet() {
+      return new AbstractSet<Map.Entry<Object, Object>>() {
+         @Override
+         public Iterator<Map.Entry<Object, Object>> iterator() {
+            final Iterator<Map.Entry<String, String>> snapshot = current().entrySet().iterator();
+            return new Iterator<Map.Entry<Object, Object>>() {
+               private Map.Entry<String, String> last;
+
+               @Override
+               public boolean hasNext() {
+                  return snapshot.hasNext();
+               }
+
+               @Override
+               public Map.Entry<Object, Object> next() {
+                  last = snapshot.next();
+                  return Collections.<Object, Object>singletonMap(last.getKey(), last.getValue()).entrySet().iterator().next();
+               }
+
+               @Override
+               public void remove() {
+                  if (last == null) {
+                     throw new IllegalStateException("No entry to be removed.");
+                  }
+                  MessageProperties.this.remove(last.getKey());
+                  last = null;
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return MessageProperties.this.size();
+         }
+
+         @Override
+         public void clear() {
+            MessageProperties.this.clear();
+         }
+      };
+   }
+
+   @Override
+   public boolean equals(final Object o) {
+      return o == this || current().equals(o);
+   }
+
+   @Override
+   public int hashCode() {
+      return current().hashCode();
+   }
+
+   @Override
+   public String toString() {
+      return current().toString();
+   }
+
+   /**
+    * Gets a detached copy of the current properties.
+    *
+    * @return The copy.
+    */
+   @Override
+   public Object clone() {
+      return copy();
+   }
+
+   /**
+    * Serializes a detached copy of the current properties as the view is bound to its message.
+    *
+    * @return The copy to be serialized instead of the view.
+    */
+   private Object writeReplace() {
+      return copy();
+   }
+}
@@ -0,0 +1,543 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.api.MessageTranslator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of messages waiting to be sent by a single message translator. The queue is drained by tasks
+ * submitted to a shared executor, at most the configured number of them runs at the same time. A slow translator thus
+ * cannot occupy more threads of the shared executor than it is allowed to.
+ *
+ * When the maximum batch size is greater than one, the messages are passed to the translator in batches. A drain task
+ * waits up to the maximum linger time for a batch to fill up. Only one drain task collects a batch at a time so that
+ * concurrent drain tasks do not split the messages into several partial batches, the batches are still sent concurrently.
+ *
+ * The messages are sent asynchronously when the translator supports it. The queue tracks the sends that did not complete
+ * yet and the latency of the completed ones.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class OutboundQueue {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(OutboundQueue.class);
+
+   /**
+    * Maximum number of messages sent by a single drain task before it gives the thread back to the executor.
+    */
+   private static final int DRAIN_LIMIT = 64;
+
+   /**
+    * The translator sending the queued messages.
+    */
+   private final MessageTranslator translator;
+
+   /**
+    * Executor running the drain tasks.
+    */
+   private final Executor executor;
+
+   /**
+    * The queued messages.
+    */
+   private final BlockingQueue<Message> queue;
+
+   /**
+    * Capacity of the queue.
+    */
+   private final int capacity;
+
+   /**
+    * What to do with messages that do not fit into the queue.
+    */
+   private final OverflowPolicy overflowPolicy;
+
+   /**
+    * Maximum number of drain tasks running at the same time.
+    */
+   private final int concurrency;
+
+   /**
+    * Storage of messages that did not fit into the queue, null unless the spill to disk policy is used.
+    */
+   private final DiskSpill spill;
+
+   /**
+    * Maximum number of messages passed to the translator at once.
+    */
+   private final int maxBatchSize;
+
+   /**
+    * Maximum time in milliseconds to wait for a batch to fill up.
+    */
+   private final long maxLingerTime;
+
+   /**
+    * Number of drain tasks currently submitted or running.
+    */
+   private final AtomicInteger drainers = new AtomicInteger(0);
+
+   /**
+    * Whether a drain task is collecting a batch right now.
+    */
+   private final AtomicBoolean collecting = new AtomicBoolean(false);
+
+   /**
+    * Number of messages rejected or dropped because of the queue overflow.
+    */
+   private final AtomicLong rejectedCount = new AtomicLong(0);
+
+   /**
+    * Number of messages spilled to disk.
+    */
+   private final AtomicLong spilledCount = new AtomicLong(0);
+
+   /**
+    * Number of sends passed to the translator and not completed yet.
+    */
+   private final AtomicInteger inFlight = new AtomicInteger(0);
+
+   /**
+    * Number of messages delivered successfully.
+    */
+   private final AtomicLong sentCount = new AtomicLong(0);
+
+   /**
+    * Number of messages whose delivery failed.
+    */
+   private final AtomicLong failedCount = new AtomicLong(0);
+
+   /**
+    * Sum of the latencies of all sent or failed messages in nanoseconds.
+    */
+   private final AtomicLong totalLatency = new AtomicLong(0);
+
+   /**
+    * Maximum latency of a completed send in nanoseconds.
+    */
+   private final AtomicLong maxLatency = new AtomicLong(0);
+
+   /**
+    * Creates a new outbound queue.
+    *
+    * @param translator     The translator sending the queued messages.
+    * @param executor       Executor running the drain tasks.
+    * @param capacity       Capacity of the queue.
+    * @param overflowPolicy What to do with messages that do not fit into the queue.
+    * @param concurrency    Maximum number of drain tasks running at the same time.
+    * @param spillDirectory Directory for messages spilled to disk, system temporary directory is used when null.
+    * @param maxBatchSize   Maximum number of messages passed to the translator at once.
+    * @param maxLingerTime  Maximum time in milliseconds to wait for a batch to fill up.
+    * @throws FederatedBusException When it was not possible to prepare the spill directory.
+    */
+   public OutboundQueue(final MessageTranslator translator, final Executor executor, final int capacity, final OverflowPolicy overflowPolicy, final int concurrency, final String spillDirectory, final int maxBatchSize, final long maxLingerTime) throws FederatedBusException {
+      this.translator = translator;
+      this.executor = executor;
+      this.capacity = capacity;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.overflowPolicy = overflowPolicy;
+      this.concurrency = Math.max(1, concurrency);
+      this.spill = overflowPolicy == OverflowPolicy.SPILL_TO_DISK ? new DiskSpill(spillDirectory, "federated-bus-" + translator.getName() + "-") : null;
+      this.maxBatchSize = Math.max(1, maxBatchSize);
+      this.maxLingerTime = maxLingerTime;
+   }
+
+   /**
+    * Enqueues a message to be sent by the translator. The overflow policy is applied when the queue is full.
+    *
+    * @param message The message to be sent.
+    */
+   public void offer(final Message message) {
+      switch (overflowPolicy) {
+         case BLOCK:
+            try {
+               queue.put(message);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               rejectedCount.incrementAndGet();
+               MessagePool.release(message);
+               log.warn("Interrupted while waiting for a free space in the queue of translator {}, message dropped.", translator.getName());
+            }
+            break;
+         case DROP_NEWEST:
+            if (!queue.offer(message)) {
+               rejectedCount.incrementAndGet();
+               MessagePool.release(message);
+            }
+            break;
+         case DROP_OLDEST:
+            while (!queue.offer(message)) {
+               final Message oldest = queue.poll();
+               if (oldest != null) {
+                  rejectedCount.incrementAndGet();
+                  MessagePool.release(oldest);
+               }
+            }
+            break;
+         case SPILL_TO_DISK:
+            synchronized (spill) {
+               if (spill.size() > 0 || !queue.offer(message)) {
+                  try {
+                     spill.write(message);
+                     spilledCount.incrementAndGet();
+                  } catch (IOException e) {
+                     rejectedCount.incrementAndGet();
+                     log.error("Unable to spill message to disk: ", e);
+                  } finally {
+                     // the message is read back as a new unpooled instance
+                     MessagePool.release(message);
+                  }
+               }
+            }
+            break;
+      }
+
+      schedule();
+   }
+
+   /**
+    * Submits a new drain task when there are queued messages and the concurrency limit allows it.
+    */
+   private void schedule() {
+      // the drain task collecting a batch takes the new messages and reschedules when it is done
+      while (!isEmpty() && !collecting.get()) {
+         final int active = drainers.get();
+         if (active >= concurrency) {
+            return;
+         }
+
+         if (drainers.compareAndSet(active, active + 1)) {
+            try {
+               executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+               drainers.decrementAndGet();
+               log.warn("Unable to schedule delivery for translator {}, the bus is not running.", translator.getName());
+            }
+            return;
+         }
+      }
+   }
+
+   /**
+    * Sends a limited number of queued messages and reschedules itself when there are more of them.
+    */
+   private void drain() {
+      try {
+         int sent = 0;
+         if (maxBatchSize == 1) {
+            Message message;
+            while (sent < DRAIN_LIMIT && (message = poll()) != null) {
+               send(message);
+               sent++;
+            }
+         } else {
+            while (sent < DRAIN_LIMIT && collecting.compareAndSet(false, true)) {
+               final List<Message> batch;
+               try {
+                  batch = nextBatch();
+               } finally {
+                  collecting.set(false);
+               }
+
+               if (batch.isEmpty()) {
+                  break;
+               }
+               send(batch);
+               sent += batch.size();
+            }
+         }
+      } finally {
+         drainers.decrementAndGet();
+         schedule();
+      }
+   }
+
+   /**
+    * Sends a single message using the translator. The message is released once the send completes.
+    *
+    * @param message The message to be sent.
+    */
+   private void send(final Message message) {
+      final long start = System.nanoTime();
+      inFlight.incrementAndGet();
+
+      CompletionStage<Void> completion;
+      try {
+         completion = translator.sendMessageAsync(message);
+      } catch (RuntimeException ex) {
+         final CompletableFuture<Void> failed = new CompletableFuture<>();
+         failed.completeExceptionally(ex);
+         completion = failed;
+      }
+
+      completion.whenComplete((result, ex) -> {
+         completed(start, 1, ex);
+         if (ex != null) {
+            log.error("Unable to send message: ", ex);
+         }
+         MessagePool.release(message);
+      });
+   }
+
+   /**
+    * Sends a batch of messages using the translator. The messages are released once the send completes.
+    *
+    * @param batch The messages to be sent.
+    */
+   private void send(final List<Message> batch) {
+      final long start = System.nanoTime();
+      inFlight.incrementAndGet();
+
+      CompletionStage<Void> completion;
+      try {
+         completion = translator.sendMessagesAsync(batch);
+      } catch (RuntimeException ex) {
+         final CompletableFuture<Void> failed = new CompletableFuture<>();
+         failed.completeExceptionally(ex);
+         completion = failed;
+      }
+
+      completion.whenComplete((result, ex) -> {
+         completed(start, batch.size(), ex);
+         if (ex != null) {
+            log.error("Unable to send messages: ", ex);
+         }
+         batch.forEach(MessagePool::release);
+      });
+   }
+
+   /**
+    * Records a completed send.
+    *
+    * @param start    Time in nanoseconds when the send started.
+    * @param messages Number of the messages sent.
+    * @param failure  Cause of the failure, null when the send succeeded.
+    */
+   private void completed(final long start, final int messages, final Throwable failure) {
+      final long latency = System.nanoTime() - start;
+      totalLatency.addAndGet(latency * messages);
+      maxLatency.accumulateAndGet(latency, Math::max);
+      (failure == null ? sentCount : failedCount).addAndGet(messages);
+      inFlight.decrementAndGet();
+   }
+
+   /**
+    * Takes the oldest messages from the queue up to the maximum batch size. Waits up to the maximum linger time
+    * for more messages when the batch is not full.
+    *
+    * @return The oldest messages, empty when there are none.
+    */
+   private List<Message> nextBatch() {
+      final List<Message> batch = new ArrayList<>(Math.min(maxBatchSize, capacity));
+
+      Message message;
+      while (batch.size() < maxBatchSize && (message = poll()) != null) {
+         batch.add(message);
+      }
+
+      if (!batch.isEmpty() && maxLingerTime > 0) {
+         final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerTime);
+         long remaining;
+
+         try {
+            while (batch.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0 && (message = queue.poll(remaining, TimeUnit.NANOSECONDS)) != null) {
+               batch.add(message);
+               while (batch.size() < maxBatchSize && (message = poll()) != null) {
+                  batch.add(message);
+               }
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      return batch;
+   }
+
+   /**
+    * Takes the oldest message from the queue. Refills the queue from the disk spill if needed.
+    *
+    * @return The oldest message or null when there is none.
+    */
+   private Message poll() {
+      final Message message = queue.poll();
+
+      if (spill != null && spill.size() > 0) {
+         synchronized (spill) {
+            try {
+               while (spill.size() > 0 && queue.remainingCapacity() > 0) {
+                  queue.offer(spill.read());
+               }
+            } catch (IOException e) {
+               rejectedCount.incrementAndGet();
+               log.error("Unable to read spilled message from disk: ", e);
+            }
+         }
+
+         if (message == null) {
+            return queue.poll();
+         }
+      }
+
+      return message;
+   }
+
+   /**
+    * Tells whether there are no messages waiting to be sent.
+    *
+    * @return True if and only if there are no messages waiting.
+    */
+   public boolean isEmpty() {
+      return queue.isEmpty() && (spill == null || spill.size() == 0);
+   }
+
+   /**
+    * Tells whether there are no messages waiting and no message is being sent, including the asynchronous sends
+    * that did not complete yet.
+    *
+    * @return True if and only if the queue is idle.
+    */
+   public boolean isIdle() {
+      return drainers.get() == 0 && inFlight.get() == 0 && isEmpty();
+   }
+
+   /**
+    * Releases resources held by the queue. Spilled messages that were not sent yet are deleted.
+    */
+   public void close() {
+      if (spill != null) {
+         synchronized (spill) {
+            spill.close();
+         }
+      }
+   }
+
+   /**
+    * Gets the translator sending the queued messages.
+    *
+    * @return The translator sending the queued messages.
+    */
+   public MessageTranslator getTranslator() {
+      return translator;
+   }
+
+   /**
+    * Gets the number of messages waiting to be sent, including those spilled to disk.
+    *
+    * @return The number of messages waiting to be sent.
+    */
+   public long getDepth() {
+      return queue.size() + (spill == null ? 0 : spill.size());
+   }
+
+   /**
+    * Gets the capacity of the in-memory queue.
+    *
+    * @return The capacity of the queue.
+    */
+   public int getCapacity() {
+      return capacity;
+   }
+
+   /**
+    * Gets the number of messages rejected or dropped because of the queue overflow or disk errors.
+    *
+    * @return The number of rejected messages.
+    */
+   public long getRejectedCount() {
+      return rejectedCount.get();
+   }
+
+   /**
+    * Gets the number of messages spilled to disk so far.
+    *
+    * @return The number of spilled messages.
+    */
+   public long getSpilledCount() {
+      return spilledCount.get();
+   }
+
+   /**
+    * Gets the number of sends passed to the translator that did not complete yet.
+    *
+    * @return The number of sends in flight.
+    */
+   public int getInFlight() {
+      return inFlight.get();
+   }
+
+   /**
+    * Gets the number of messages delivered successfully so far.
+    *
+    * @return The number of sent messages.
+    */
+   public long getSentCount() {
+      return sentCount.get();
+   }
+
+   /**
+    * Gets the number of messages whose delivery failed so far.
+    *
+    * @return The number of failed messages.
+    */
+   public long getFailedCount() {
+      return failedCount.get();
+   }
+
+   /**
+    * Gets the average time from passing a message to the translator to the completion of its send.
+    *
+    * @return The average latency in nanoseconds, 0 when nothing was sent yet.
+    */
+   public long getAverageLatency() {
+      final long messages = sentCount.get() + failedCount.get();
+      return messages == 0 ? 0 : totalLatency.get() / messages;
+   }
+
+   /**
+    * Gets the maximum time from passing a message or a batch to the translator to the completion of the send.
+    *
+    * @return The maximum latency in nanoseconds.
+    */
+   public long getMaxLatency() {
+      return maxLatency.get();
+   }
+}
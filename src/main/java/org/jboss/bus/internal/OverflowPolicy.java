@@ -0,0 +1,48 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+/**
+ * Tells what happens to a message that is sent to a full outbound queue.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum OverflowPolicy {
+
+   /**
+    * The producer is blocked until there is a free space in the queue.
+    */
+   BLOCK,
+
+   /**
+    * The new message is dropped.
+    */
+   DROP_NEWEST,
+
+   /**
+    * The oldest message in the queue is dropped to make space for the new one.
+    */
+   DROP_OLDEST,
+
+   /**
+    * The new message is written to a local disk and read back once there is a free space in the queue.
+    */
+   SPILL_TO_DISK
+}
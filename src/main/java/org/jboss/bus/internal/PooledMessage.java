@@ -0,0 +1,104 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Message acquired from a {@link MessagePool}. The message counts its references and returns itself to the pool
+ * once the last reference is released. The translator that acquired the message owns the first reference and hands it
+ * over to the bus by calling {@link org.jboss.bus.api.FederatedBus#processMessage(org.jboss.bus.api.Message)}. Buses
+ * supporting pooled messages take one reference per destination translator and release it after the translator's
+ * send method returns. Buses that do not support them never release the message, it is then simply garbage collected.
+ *
+ * The message must not be used by anybody after releasing its reference. Translators receiving a pooled message must not
+ * keep it after they sent it, its payload and headers can be kept though.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public final class PooledMessage extends MessageImpl {
+
+   private static final long serialVersionUID = 6398476470914537327L;
+
+   /**
+    * Atomically updates the number of references.
+    */
+   private static final AtomicIntegerFieldUpdater<PooledMessage> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(PooledMessage.class, "references");
+
+   /**
+    * The pool this message returns to, null for a deserialized message that never returns to any pool.
+    */
+   private final transient MessagePool pool;
+
+   /**
+    * Number of references to this message.
+    */
+   private transient volatile int references;
+
+   /**
+    * Creates a new message belonging to the given pool.
+    *
+    * @param pool The pool this message returns to.
+    */
+   PooledMessage(final MessagePool pool) {
+      this.pool = pool;
+   }
+
+   /**
+    * Resets the number of references when the message is acquired from the pool.
+    */
+   void acquired() {
+      references = 1;
+   }
+
+   /**
+    * Adds references to this message.
+    *
+    * @param count Number of the added references.
+    */
+   public void retain(final int count) {
+      REFERENCES.addAndGet(this, count);
+   }
+
+   /**
+    * Releases a single reference to this message. The message is cleared and returned to the pool when it was
+    * the last one.
+    */
+   public void release() {
+      final int remaining = REFERENCES.decrementAndGet(this);
+      if (remaining == 0) {
+         if (pool != null) {
+            clear();
+            pool.recycle(this);
+         }
+      } else if (remaining < 0 && pool != null) {
+         throw new IllegalStateException("Pooled message released more times than retained.");
+      }
+   }
+
+   /**
+    * Gets the number of references to this message.
+    *
+    * @return The number of references.
+    */
+   public int getReferences() {
+      return references;
+   }
+}
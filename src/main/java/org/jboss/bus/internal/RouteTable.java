@@ -0,0 +1,178 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.internal;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.api.MessageTranslator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precompiled routing table of a federated bus. Maps a message source to the exact list of its destinations so that
+ * the bus does not need to broadcast every message to every translator.
+ *
+ * The source of a message is taken from its {@link Message#FROM_HEADER} first (to allow routing of a single endpoint)
+ * and then from its {@link Message#SOURCE_HEADER}. Messages with an unknown source are routed to all destinations.
+ *
+ * Routes are described as a list of rules separated by ";" where each rule has the form
+ * <code>source -&gt; destination1, destination2</code>. The source is either a translator name or a value of the from header
+ * (e.g. <code>camel:direct://in</code>), the destinations are translator names.
+ *
+ * A translator bridging its own endpoints (e.g. from <code>direct:in</code> to <code>direct:out</code>) needs an explicit
+ * route when the source translator is skipped, either for all its messages (<code>camel -&gt; camel</code>) or only
+ * for the messages of a single input endpoint (<code>camel:direct://in -&gt; camel, other</code>).
+ *
+ * @param <T> Type of the route destinations. Typically a message translator or a structure wrapping it.
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class RouteTable<T> {
+
+   /**
+    * Separator of individual route rules.
+    */
+   private static final String RULE_SEPARATOR = ";";
+
+   /**
+    * Separator of the source and the destinations in a rule.
+    */
+   private static final String ROUTE_ARROW = "->";
+
+   /**
+    * Destinations for individual sources.
+    */
+   private final Map<String, List<T>> routes;
+
+   /**
+    * Destinations used for messages with an unknown source.
+    */
+   private final List<T> defaultRoute;
+
+   private RouteTable(final Map<String, List<T>> routes, final List<T> defaultRoute) {
+      this.routes = routes;
+      this.defaultRoute = defaultRoute;
+   }
+
+   /**
+    * Gets the destinations of the given message.
+    *
+    * @param message The message to be routed.
+    * @return The unmodifiable list of destinations of the message.
+    */
+   public List<T> route(final Message message) {
+      List<T> destinations = null;
+
+      final Object from = message.getHeader(Message.FROM_HEADER);
+      if (from != null) {
+         destinations = routes.get(from);
+      }
+
+      if (destinations == null) {
+         final Object source = message.getHeader(Message.SOURCE_HEADER);
+         if (source != null) {
+            destinations = routes.get(source);
+         }
+      }
+
+      return destinations == null ? defaultRoute : destinations;
+   }
+
+   /**
+    * Gets the destinations used for messages with an unknown source.
+    *
+    * @return The unmodifiable list of all destinations.
+    */
+   public List<T> getDefaultRoute() {
+      return defaultRoute;
+   }
+
+   /**
+    * Compiles a new routing table.
+    *
+    * @param destinations     Message translators registered with the bus mapped to the destinations representing them.
+    * @param routesDefinition Explicit routes, can be null. Sources without an explicit route are routed to all destinations.
+    * @param skipSource       When true, the translator from which a message comes is not used as its destination
+    *                         unless there is an explicit route saying so. Translators sharing their name with another
+    *                         translator are never skipped as the source cannot be told apart.
+    * @param <T>              Type of the route destinations.
+    * @return The compiled routing table.
+    * @throws FederatedBusException When the routes definition is not valid.
+    */
+   public static <T> RouteTable<T> compile(final Map<MessageTranslator, T> destinations, final String routesDefinition, final boolean skipSource) throws FederatedBusException {
+      final Map<String, List<T>> byName = new HashMap<>();
+      destinations.forEach((translator, destination) -> byName.computeIfAbsent(translator.getName(), name -> new ArrayList<>()).add(destination));
+
+      final Map<String, List<T>> routes = new HashMap<>();
+
+      if (skipSource) {
+         byName.forEach((source, sources) -> {
+            // the source translator is known by its name only, skip it just when the name is unambiguous
+            if (sources.size() == 1) {
+               final List<T> route = new ArrayList<>();
+               byName.forEach((name, named) -> {
+                  if (!name.equals(source)) {
+                     route.addAll(named);
+                  }
+               });
+               routes.put(source, Collections.unmodifiableList(route));
+            }
+         });
+      }
+
+      if (StringUtils.isNotBlank(routesDefinition)) {
+         for (final String rule : routesDefinition.split(RULE_SEPARATOR)) {
+            if (StringUtils.isBlank(rule)) {
+               continue;
+            }
+
+            final int arrow = rule.indexOf(ROUTE_ARROW);
+            if (arrow < 0) {
+               throw new FederatedBusException(String.format("Invalid route '%s', expected 'source -> destination1, destination2'.", rule.trim()));
+            }
+
+            final String source = StringUtils.strip(rule.substring(0, arrow));
+            final Set<T> route = new LinkedHashSet<>();
+            for (final String name : rule.substring(arrow + ROUTE_ARROW.length()).split(",")) {
+               final String destination = StringUtils.strip(name);
+               if (destination.isEmpty()) {
+                  continue;
+               }
+
+               final List<T> named = byName.get(destination);
+               if (named == null) {
+                  throw new FederatedBusException(String.format("Unknown destination translator '%s' in route '%s'.", destination, rule.trim()));
+               }
+               route.addAll(named);
+            }
+
+            routes.put(source, Collections.unmodifiableList(new ArrayList<>(route)));
+         }
+      }
+
+      return new RouteTable<>(routes, Collections.unmodifiableList(new ArrayList<>(destinations.values())));
+   }
+}
@@ -0,0 +1,206 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.ring;
+
+import org.jboss.bus.api.Message;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated ring buffer of messages and their destinations. Producers claim a slot, fill it and publish it,
+ * consumers follow the published slots using their own sequences. A producer waits when it would overwrite a slot that
+ * was not processed by all the consumers yet. Publishing a message does not allocate any objects.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+class RingBuffer {
+
+   /**
+    * Number of slots, always a power of two.
+    */
+   private final int bufferSize;
+
+   /**
+    * Mask to compute slot index from a sequence number.
+    */
+   private final int indexMask;
+
+   /**
+    * Shift to compute the wrap count of a sequence number.
+    */
+   private final int indexShift;
+
+   /**
+    * Messages in the slots.
+    */
+   private final Message[] messages;
+
+   /**
+    * Destinations of the messages in the slots.
+    */
+   private final List<?>[] routes;
+
+   /**
+    * Wrap count of the sequence published in each slot. Tells the consumers whether a slot is ready.
+    */
+   private final AtomicIntegerArray available;
+
+   /**
+    * The highest claimed sequence number.
+    */
+   private final AtomicLong cursor = new AtomicLong(-1);
+
+   /**
+    * How the producers wait for a free slot.
+    */
+   private final WaitStrategy waitStrategy;
+
+   /**
+    * Sequences of all consumers, no slot can be overwritten until it is processed by all of them.
+    */
+   private Sequence[] gatingSequences = new Sequence[0];
+
+   /**
+    * The last known minimum of the gating sequences.
+    */
+   private volatile long gatingCache = -1;
+
+   /**
+    * Creates a new ring buffer.
+    *
+    * @param bufferSize   Requested number of slots, rounded up to the next power of two.
+    * @param waitStrategy How the producers wait for a free slot.
+    */
+   RingBuffer(final int bufferSize, final WaitStrategy waitStrategy) {
+      this.bufferSize = bufferSize <= 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+      this.indexMask = this.bufferSize - 1;
+      this.indexShift = Integer.numberOfTrailingZeros(this.bufferSize);
+      this.messages = new Message[this.bufferSize];
+      this.routes = new List<?>[this.bufferSize];
+      this.available = new AtomicIntegerArray(this.bufferSize);
+      this.waitStrategy = waitStrategy;
+
+      for (int i = 0; i < this.bufferSize; i++) {
+         available.set(i, -1);
+      }
+   }
+
+   /**
+    * Sets the sequences of all consumers. Must be called before any message is published.
+    *
+    * @param gatingSequences The consumer sequences.
+    */
+   void setGatingSequences(final Sequence... gatingSequences) {
+      this.gatingSequences = gatingSequences;
+   }
+
+   /**
+    * Claims the next slot. Waits until the slot is processed by all consumers.
+    *
+    * @return The sequence number of the claimed slot.
+    */
+   long next() {
+      final long sequence = cursor.incrementAndGet();
+      final long wrapPoint = sequence - bufferSize;
+
+      int counter = 0;
+      while (wrapPoint > gatingCache) {
+         final long minimum = minimumGatingSequence(sequence);
+         gatingCache = minimum;
+         if (wrapPoint > minimum) {
+            waitStrategy.idle(counter++);
+         }
+      }
+
+      return sequence;
+   }
+
+   /**
+    * Fills the claimed slot and makes it available to the consumers.
+    *
+    * @param sequence The sequence number of the claimed slot.
+    * @param message  The message.
+    * @param route    The destinations of the message.
+    */
+   void publish(final long sequence, final Message message, final List<?> route) {
+      final int index = (int) sequence & indexMask;
+      messages[index] = message;
+      routes[index] = route;
+      available.lazySet(index, (int) (sequence >>> indexShift));
+   }
+
+   /**
+    * Tells whether the slot with the given sequence number was published.
+    *
+    * @param sequence The sequence number.
+    * @return True if and only if the slot is ready to be processed.
+    */
+   boolean isAvailable(final long sequence) {
+      return available.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+   }
+
+   /**
+    * Gets the message in a published slot.
+    *
+    * @param sequence The sequence number of the slot.
+    * @return The message.
+    */
+   Message getMessage(final long sequence) {
+      return messages[(int) sequence & indexMask];
+   }
+
+   /**
+    * Gets the destinations of the message in a published slot.
+    *
+    * @param sequence The sequence number of the slot.
+    * @return The message destinations.
+    */
+   List<?> getRoute(final long sequence) {
+      return routes[(int) sequence & indexMask];
+   }
+
+   /**
+    * Gets the highest claimed sequence number.
+    *
+    * @return The highest claimed sequence number.
+    */
+   long getCursor() {
+      return cursor.get();
+   }
+
+   /**
+    * Gets the number of slots.
+    *
+    * @return The number of slots.
+    */
+   int getBufferSize() {
+      return bufferSize;
+   }
+
+   private long minimumGatingSequence(final long defaultValue) {
+      long minimum = defaultValue;
+      for (final Sequence gatingSequence : gatingSequences) {
+         minimum = Math.min(minimum, gatingSequence.get());
+      }
+      return minimum;
+   }
+}
@@ -0,0 +1,266 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.ring;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.api.MessageTranslator;
+import org.jboss.bus.internal.AbstractRoutingFederatedBus;
+import org.jboss.bus.internal.MessagePool;
+import org.jboss.bus.internal.RouteTable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Federated bus forwarding the inbound messages to outbound translators through a preallocated ring buffer.
+ * Each translator has its own consumer thread following the buffer with its own sequence, so there is no shared queue
+ * and no allocation of tasks per message. The destinations of each message are looked up in a routing table compiled
+ * when the bus starts, by default a message is forwarded to all translators except for the one it came from, unless
+ * the name of that translator is shared by another one. A translator bridging its own endpoints needs an explicit route
+ * like <code>camel -&gt; camel</code>, see {@link RouteTable}.
+ *
+ * When the buffer is full, the producers wait until the slowest translator catches up. A translator must not send
+ * messages back to this bus from its own consumer thread in such a case.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class RingBufferFederatedBus extends AbstractRoutingFederatedBus {
+
+   /**
+    * Logger for this class.
+    */
+   private static final Logger log = LogManager.getLogger(RingBufferFederatedBus.class);
+
+   /**
+    * How long to wait for the consumers to process the remaining messages when the bus stops.
+    */
+   private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+   /**
+    * Number of slots in the ring buffer, rounded up to the next power of two.
+    */
+   private int bufferSize = 1024;
+
+   /**
+    * How the producers and consumers wait.
+    */
+   private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+   /**
+    * The ring buffer.
+    */
+   private RingBuffer ringBuffer;
+
+   /**
+    * Routing table compiled when the bus starts.
+    */
+   private RouteTable<Consumer> routeTable;
+
+   /**
+    * Consumers of individual translators.
+    */
+   private final List<Consumer> consumers = new ArrayList<>();
+
+   /**
+    * Whether the bus accepts new messages.
+    */
+   private volatile boolean running = false;
+
+   /**
+    * Number of producers between the check of {@link #running} and the publication of their message. The consumers
+    * do not finish until it drops to zero so that no message accepted by the bus is left behind.
+    */
+   private final AtomicInteger producers = new AtomicInteger();
+
+   @Override
+   public void processMessage(final Message message) {
+      producers.incrementAndGet();
+      if (!running) {
+         producers.decrementAndGet();
+         log.warn("Federated bus is not running, message dropped.");
+         MessagePool.release(message);
+         return;
+      }
+
+      try {
+         final List<Consumer> route = routeTable.route(message);
+         if (route.isEmpty()) {
+            MessagePool.release(message);
+            return;
+         }
+
+         // each consumer releases its own reference, the reference of the sender is released right away
+         MessagePool.retain(message, route.size());
+         final long sequence = ringBuffer.next();
+         ringBuffer.publish(sequence, message, route);
+         MessagePool.release(message);
+      } finally {
+         producers.decrementAndGet();
+      }
+   }
+
+   @Override
+   public void start() {
+      ringBuffer = new RingBuffer(bufferSize, waitStrategy);
+
+      final Map<MessageTranslator, Consumer> destinations = new LinkedHashMap<>();
+      messageTranslators.forEach(messageTranslator -> destinations.put(messageTranslator, new Consumer(messageTranslator)));
+
+      try {
+         routeTable = RouteTable.compile(destinations, routes, skipSource);
+      } catch (FederatedBusException e) {
+         throw new IllegalStateException("Ring buffer federated bus could not be started: ", e);
+      }
+
+      consumers.addAll(destinations.values());
+      ringBuffer.setGatingSequences(consumers.stream().map(consumer -> consumer.sequence).toArray(Sequence[]::new));
+
+      running = true;
+      consumers.forEach(Consumer::start);
+      super.start();
+
+      log.info("Ring buffer federated bus started!");
+   }
+
+   @Override
+   public void stop() {
+      super.stop();
+      running = false;
+
+      final long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+      for (final Consumer consumer : consumers) {
+         try {
+            consumer.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+
+         if (consumer.thread.isAlive()) {
+            log.warn("Translator {} did not process all messages before the bus stopped.", consumer.translator.getName());
+            consumer.thread.interrupt();
+         }
+      }
+      consumers.clear();
+   }
+
+   /**
+    * Gets the number of slots in the ring buffer.
+    *
+    * @return The number of slots in the ring buffer.
+    */
+   public int getBufferSize() {
+      return bufferSize;
+   }
+
+   /**
+    * Sets the number of slots in the ring buffer. The value is rounded up to the next power of two.
+    *
+    * @param bufferSize The number of slots in the ring buffer.
+    */
+   public void setBufferSize(final int bufferSize) {
+      this.bufferSize = bufferSize;
+   }
+
+   /**
+    * Gets the strategy of waiting for messages or free slots.
+    *
+    * @return The wait strategy.
+    */
+   public WaitStrategy getWaitStrategy() {
+      return waitStrategy;
+   }
+
+   /**
+    * Sets the strategy of waiting for messages or free slots.
+    *
+    * @param waitStrategy The wait strategy.
+    */
+   public void setWaitStrategy(final WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+   }
+
+   /**
+    * Follows the ring buffer and sends the messages routed to a single translator.
+    */
+   private class Consumer implements Runnable {
+
+      /**
+       * The translator sending the messages.
+       */
+      private final MessageTranslator translator;
+
+      /**
+       * The last processed sequence number.
+       */
+      private final Sequence sequence = new Sequence(-1);
+
+      /**
+       * Thread of this consumer.
+       */
+      private final Thread thread;
+
+      private Consumer(final MessageTranslator translator) {
+         this.translator = translator;
+         this.thread = new Thread(this, "ring-buffer-bus-" + translator.getName());
+         this.thread.setDaemon(true);
+      }
+
+      private void start() {
+         thread.start();
+      }
+
+      @Override
+      public void run() {
+         long next = sequence.get() + 1;
+         int counter = 0;
+
+         while (!Thread.currentThread().isInterrupted()) {
+            if (ringBuffer.isAvailable(next)) {
+               if (ringBuffer.getRoute(next).contains(this)) {
+                  send(ringBuffer.getMessage(next));
+               }
+               sequence.set(next++);
+               counter = 0;
+            } else if (!running && producers.get() == 0 && next > ringBuffer.getCursor()) {
+               // the producers that saw the bus running have claimed their sequences by now
+               return;
+            } else {
+               waitStrategy.idle(counter++);
+            }
+         }
+      }
+
+      private void send(final Message message) {
+         try {
+            translator.sendMessage(message);
+         } catch (FederatedBusException | RuntimeException ex) {
+            log.error("Unable to send message: ", ex);
+         } finally {
+            MessagePool.release(message);
+         }
+      }
+   }
+}
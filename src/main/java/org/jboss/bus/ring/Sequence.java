@@ -0,0 +1,76 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.ring;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Sequence number of a ring buffer consumer. Padded to occupy its own cache line so that the consumers updating their
+ * sequences do not slow each other down.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+@SuppressWarnings("unused")
+class Sequence {
+
+   private static final AtomicLongFieldUpdater<Sequence> VALUE_UPDATER = AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+   /**
+    * Padding before the value.
+    */
+   private long p1, p2, p3, p4, p5, p6, p7;
+
+   /**
+    * The sequence number.
+    */
+   private volatile long value;
+
+   /**
+    * Padding after the value.
+    */
+   private long q1, q2, q3, q4, q5, q6, q7;
+
+   /**
+    * Creates a new sequence.
+    *
+    * @param initialValue The initial sequence number.
+    */
+   Sequence(final long initialValue) {
+      VALUE_UPDATER.lazySet(this, initialValue);
+   }
+
+   /**
+    * Gets the sequence number.
+    *
+    * @return The sequence number.
+    */
+   long get() {
+      return value;
+   }
+
+   /**
+    * Sets the sequence number with the release semantics.
+    *
+    * @param value The new sequence number.
+    */
+   void set(final long value) {
+      VALUE_UPDATER.lazySet(this, value);
+   }
+}
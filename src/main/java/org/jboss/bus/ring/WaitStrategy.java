@@ -0,0 +1,72 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.ring;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tells how the threads of a ring buffer wait for new messages or for a free space in the buffer.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum WaitStrategy {
+
+   /**
+    * Busy spinning, the lowest latency for the price of a fully utilized CPU core per waiting thread.
+    */
+   BUSY_SPIN,
+
+   /**
+    * Spinning for a while and then yielding the CPU to other threads.
+    */
+   YIELD,
+
+   /**
+    * Spinning for a while and then parking the thread for a short time. The most CPU friendly strategy.
+    */
+   PARK;
+
+   /**
+    * Number of spins before yielding or parking the thread.
+    */
+   private static final int SPIN_TRIES = 100;
+
+   /**
+    * How long to park the thread in nanoseconds.
+    */
+   private static final long PARK_NANOS = 50_000;
+
+   /**
+    * Waits before the next attempt.
+    *
+    * @param counter Number of previous unsuccessful attempts.
+    */
+   void idle(final int counter) {
+      if (this == BUSY_SPIN || counter < SPIN_TRIES) {
+         return;
+      }
+
+      if (this == YIELD) {
+         Thread.yield();
+      } else {
+         LockSupport.parkNanos(PARK_NANOS);
+      }
+   }
+}
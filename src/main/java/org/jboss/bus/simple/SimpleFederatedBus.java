@@ -23,51 +23,209 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jboss.bus.api.FederatedBusException;
 import org.jboss.bus.api.Message;
-import org.jboss.bus.internal.AbstractFederatedBus;
+import org.jboss.bus.api.MessageTranslator;
+import org.jboss.bus.internal.AbstractRoutingFederatedBus;
+import org.jboss.bus.internal.ExecutorStrategy;
+import org.jboss.bus.internal.MessagePool;
+import org.jboss.bus.internal.OutboundQueue;
+import org.jboss.bus.internal.OverflowPolicy;
+import org.jboss.bus.internal.RouteTable;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
- * Simplest federated bus that just forwards all inbound messages to all outbound translators.
+ * Simplest federated bus that just forwards all inbound messages to outbound translators. The destinations of each
+ * message are looked up in a routing table compiled when the bus starts. By default, a message is forwarded to all
+ * translators except for the one it came from, unless the name of that translator is shared by another one. A translator
+ * bridging its own endpoints needs an explicit route like <code>camel -&gt; camel</code>, see {@link RouteTable}.
+ *
+ * Each translator has its own bounded outbound queue drained by the shared thread pool. When a queue is full, its
+ * overflow policy decides what happens with new messages. A translator can use at most the configured number of
+ * threads at the same time so that a slow translator cannot starve the others. Messages can be passed to the
+ * translators in batches, trading a little latency for higher throughput.
+ *
+ * When an ordering key is configured, the outbound queue of each translator is split into the given number of lanes
+ * sent by a single thread each. Messages with the same value of the ordering key (a header or a property) always use
+ * the same lane, so their order is kept per key and per translator while messages with different keys are still sent
+ * in parallel.
  *
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
-public class SimpleFederatedBus extends AbstractFederatedBus {
+public class SimpleFederatedBus extends AbstractRoutingFederatedBus {
 
    /**
     * Logger for this class.
     */
    private static final Logger log = LogManager.getLogger(SimpleFederatedBus.class);
 
+   /**
+    * How long to wait for the outbound queues to be drained when the bus stops.
+    */
+   private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+   /**
+    * Number of lanes of each translator when the order is kept and the translators are not limited by the thread pool size.
+    */
+   private static final int DEFAULT_VIRTUAL_LANES = 256;
+
    /**
     * Allows to execute submitted tasks using a thread pool.
     */
-   private ThreadPoolExecutor executor;
+   private ExecutorService executor;
 
    /**
     * Size of the thread pool.
     */
    private int threadPoolSize = 10;
 
+   /**
+    * How the submitted tasks are executed.
+    */
+   private ExecutorStrategy executorStrategy = ExecutorStrategy.FIXED;
+
+   /**
+    * Routing table compiled when the bus starts.
+    */
+   private RouteTable<OutboundQueue[]> routeTable;
+
+   /**
+    * Capacity of the outbound queue of each translator.
+    */
+   private int queueCapacity = 10_000;
+
+   /**
+    * What happens with messages that do not fit into an outbound queue.
+    */
+   private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+   /**
+    * Directory for messages spilled to disk, system temporary directory is used when not set.
+    */
+   private String spillDirectory;
+
+   /**
+    * Maximum number of threads a single translator can use at the same time, 0 to split the thread pool evenly among translators
+    * (or not to limit the translators when virtual threads are used).
+    */
+   private int translatorConcurrency = 0;
+
+   /**
+    * Maximum number of messages passed to a translator at once.
+    */
+   private int maxBatchSize = 1;
+
+   /**
+    * Maximum time in milliseconds to wait for a batch of messages to fill up.
+    */
+   private long maxLingerTime = 0;
+
+   /**
+    * Name of the header or property whose value determines the order of messages, null when the order is not kept.
+    */
+   private String orderingKey;
+
+   /**
+    * Number of lanes of each translator when the order is kept, 0 to use the same number as the translator concurrency.
+    */
+   private int orderingLanes = 0;
+
+   /**
+    * Outbound queues of individual translators, split into lanes when the order is kept.
+    */
+   private final Map<MessageTranslator, OutboundQueue[]> outboundQueues = new LinkedHashMap<>();
+
+   /**
+    * Number of lanes of each translator.
+    */
+   private int lanes = 1;
+
    @Override
    public void processMessage(final Message message) {
-      messageTranslators.forEach(messageTranslator ->
-            CompletableFuture.runAsync(() -> {
-               try {
-                  messageTranslator.sendMessage(message);
-               } catch (FederatedBusException ex) {
-                  log.error("Unable to send message: ", ex);
-               }
+      final int lane = lanes == 1 ? 0 : lane(message);
+      final List<OutboundQueue[]> route = routeTable.route(message);
 
-            }, executor)
-      );
+      // each destination releases its own reference, the reference of the sender is released right away
+      MessagePool.retain(message, route.size());
+      for (final OutboundQueue[] outboundQueue : route) {
+         outboundQueue[lane].offer(message);
+      }
+      MessagePool.release(message);
+   }
+
+   /**
+    * Computes the lane of a message from the value of the ordering key. Messages without the key are ordered by their origin.
+    *
+    * @param message The message.
+    * @return The lane index.
+    */
+   private int lane(final Message message) {
+      Object key = message.getHeader(orderingKey);
+      if (key == null) {
+         key = message.getProperty(orderingKey);
+      }
+      if (key == null) {
+         key = message.getHeader(Message.FROM_HEADER);
+      }
+      if (key == null) {
+         return 0;
+      }
+
+      final int hash = key.hashCode();
+      return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes;
    }
 
    @Override
    public void start() {
-      executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadPoolSize);
+      executor = executorStrategy.newExecutor(threadPoolSize);
+
+      final int concurrency;
+      if (translatorConcurrency > 0) {
+         concurrency = translatorConcurrency;
+      } else if (executorStrategy == ExecutorStrategy.VIRTUAL && ExecutorStrategy.isVirtualThreadSupported()) {
+         concurrency = Integer.MAX_VALUE;
+      } else {
+         concurrency = Math.max(1, threadPoolSize / Math.max(1, messageTranslators.size()));
+      }
+
+      if (orderingKey == null) {
+         lanes = 1;
+      } else if (orderingLanes > concurrency) {
+         // each lane drains on its own, more lanes would let the translator occupy more threads than allowed
+         log.warn("Ordering lanes capped at the translator concurrency {}.", concurrency);
+         lanes = concurrency;
+      } else if (orderingLanes > 0) {
+         lanes = orderingLanes;
+      } else {
+         lanes = concurrency == Integer.MAX_VALUE ? DEFAULT_VIRTUAL_LANES : concurrency;
+      }
+
+      try {
+         for (final MessageTranslator messageTranslator : messageTranslators) {
+            final OutboundQueue[] translatorQueues = new OutboundQueue[lanes];
+            outboundQueues.put(messageTranslator, translatorQueues);
+
+            for (int i = 0; i < lanes; i++) {
+               translatorQueues[i] = lanes == 1 ?
+                     new OutboundQueue(messageTranslator, executor, queueCapacity, overflowPolicy, concurrency, spillDirectory, maxBatchSize, maxLingerTime) :
+                     new OutboundQueue(messageTranslator, executor, Math.max(1, queueCapacity / lanes), overflowPolicy, 1, spillDirectory, maxBatchSize, maxLingerTime);
+            }
+         }
+
+         routeTable = RouteTable.compile(outboundQueues, routes, skipSource);
+      } catch (FederatedBusException e) {
+         allQueues().filter(outboundQueue -> outboundQueue != null).forEach(OutboundQueue::close);
+         outboundQueues.clear();
+         executor.shutdown();
+         throw new IllegalStateException("Simple federated bus could not be started: ", e);
+      }
+
       super.start();
 
       log.info("Simple federated bus started!");
@@ -76,7 +234,65 @@ public class SimpleFederatedBus extends AbstractFederatedBus {
    @Override
    public void stop() {
       super.stop();
-      executor.shutdown();
+
+      final long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+      try {
+         while (!allQueues().allMatch(OutboundQueue::isIdle) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+         }
+
+         executor.shutdown();
+         executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+
+      allQueues().forEach(outboundQueue -> {
+         if (outboundQueue.getDepth() > 0) {
+            log.warn("{} messages for translator {} were not sent before the bus stopped.", outboundQueue.getDepth(), outboundQueue.getTranslator().getName());
+         }
+         outboundQueue.close();
+      });
+      outboundQueues.clear();
+   }
+
+   /**
+    * Gets all outbound queues of all translators.
+    *
+    * @return The stream of all outbound queues.
+    */
+   private Stream<OutboundQueue> allQueues() {
+      return outboundQueues.values().stream().flatMap(Arrays::stream);
+   }
+
+   /**
+    * Gets the outbound queues of individual translators. Can be used to monitor the queue depths and rejection counts.
+    * There is a single queue per translator unless the order of messages is kept, one queue per lane otherwise.
+    *
+    * @return The outbound queues of the registered translators, empty when the bus is not running.
+    */
+   public Map<MessageTranslator, List<OutboundQueue>> getOutboundQueues() {
+      final Map<MessageTranslator, List<OutboundQueue>> result = new LinkedHashMap<>();
+      outboundQueues.forEach((messageTranslator, translatorQueues) -> result.put(messageTranslator, Collections.unmodifiableList(Arrays.asList(translatorQueues))));
+      return Collections.unmodifiableMap(result);
+   }
+
+   /**
+    * Gets the total number of messages waiting in all outbound queues.
+    *
+    * @return The total number of waiting messages.
+    */
+   public long getQueueDepth() {
+      return allQueues().mapToLong(OutboundQueue::getDepth).sum();
+   }
+
+   /**
+    * Gets the total number of messages rejected or dropped by all outbound queues.
+    *
+    * @return The total number of rejected messages.
+    */
+   public long getRejectedCount() {
+      return allQueues().mapToLong(OutboundQueue::getRejectedCount).sum();
    }
 
    /**
@@ -96,4 +312,170 @@ public class SimpleFederatedBus extends AbstractFederatedBus {
    public void setThreadPoolSize(final int threadPoolSize) {
       this.threadPoolSize = threadPoolSize;
    }
-}
+
+   /**
+    * Gets the strategy of executing the submitted tasks.
+    *
+    * @return The executor strategy.
+    */
+   public ExecutorStrategy getExecutorStrategy() {
+      return executorStrategy;
+   }
+
+   /**
+    * Sets the strategy of executing the submitted tasks.
+    *
+    * @param executorStrategy The executor strategy.
+    */
+   public void setExecutorStrategy(final ExecutorStrategy executorStrategy) {
+      this.executorStrategy = executorStrategy;
+   }
+
+   /**
+    * Gets the capacity of the outbound queue of each translator.
+    *
+    * @return The capacity of the outbound queues.
+    */
+   public int getQueueCapacity() {
+      return queueCapacity;
+   }
+
+   /**
+    * Sets the capacity of the outbound queue of each translator.
+    *
+    * @param queueCapacity The capacity of the outbound queues.
+    */
+   public void setQueueCapacity(final int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+   }
+
+   /**
+    * Gets the policy applied to messages that do not fit into an outbound queue.
+    *
+    * @return The overflow policy.
+    */
+   public OverflowPolicy getOverflowPolicy() {
+      return overflowPolicy;
+   }
+
+   /**
+    * Sets the policy applied to messages that do not fit into an outbound queue.
+    *
+    * @param overflowPolicy The overflow policy.
+    */
+   public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+   }
+
+   /**
+    * Gets the directory for messages spilled to disk.
+    *
+    * @return The spill directory.
+    */
+   public String getSpillDirectory() {
+      return spillDirectory;
+   }
+
+   /**
+    * Sets the directory for messages spilled to disk.
+    *
+    * @param spillDirectory The spill directory.
+    */
+   public void setSpillDirectory(final String spillDirectory) {
+      this.spillDirectory = spillDirectory;
+   }
+
+   /**
+    * Gets the maximum number of threads a single translator can use at the same time.
+    *
+    * @return The maximum number of threads per translator, 0 when the thread pool is split evenly among translators.
+    */
+   public int getTranslatorConcurrency() {
+      return translatorConcurrency;
+   }
+
+   /**
+    * Sets the maximum number of threads a single translator can use at the same time.
+    *
+    * @param translatorConcurrency The maximum number of threads per translator, 0 to split the thread pool evenly among translators
+    *                              (or not to limit the translators when virtual threads are used).
+    */
+   public void setTranslatorConcurrency(final int translatorConcurrency) {
+      this.translatorConcurrency = translatorConcurrency;
+   }
+
+   /**
+    * Gets the maximum number of messages passed to a translator at once.
+    *
+    * @return The maximum batch size.
+    */
+   public int getMaxBatchSize() {
+      return maxBatchSize;
+   }
+
+   /**
+    * Sets the maximum number of messages passed to a translator at once. Batching is disabled when set to 1.
+    *
+    * @param maxBatchSize The maximum batch size.
+    */
+   public void setMaxBatchSize(final int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+   }
+
+   /**
+    * Gets the maximum time in milliseconds to wait for a batch of messages to fill up.
+    *
+    * @return The maximum linger time in milliseconds.
+    */
+   public long getMaxLingerTime() {
+      return maxLingerTime;
+   }
+
+   /**
+    * Sets the maximum time in milliseconds to wait for a batch of messages to fill up. A batch is sent with
+    * the messages that are immediately available when set to 0.
+    *
+    * @param maxLingerTime The maximum linger time in milliseconds.
+    */
+   public void setMaxLingerTime(final long maxLingerTime) {
+      this.maxLingerTime = maxLingerTime;
+   }
+
+   /**
+    * Gets the name of the header or property whose value determines the order of messages.
+    *
+    * @return The ordering key, null when the order is not kept.
+    */
+   public String getOrderingKey() {
+      return orderingKey;
+   }
+
+   /**
+    * Sets the name of the header or property whose value determines the order of messages. Messages with the same
+    * value are sent by each translator in the order in which they came to the bus.
+    *
+    * @param orderingKey The ordering key, null not to keep the order.
+    */
+   public void setOrderingKey(final String orderingKey) {
+      this.orderingKey = orderingKey;
+   }
+
+   /**
+    * Gets the number of lanes of each translator when the order is kept.
+    *
+    * @return The number of lanes, 0 when it is the same as the translator concurrency.
+    */
+   public int getOrderingLanes() {
+      return orderingLanes;
+   }
+
+   /**
+    * Sets the number of lanes of each translator when the order is kept. The outbound queue capacity is split among the lanes.
+    * The number of lanes is capped at the translator concurrency as each lane can occupy a thread.
+    *
+    * @param orderingLanes The number of lanes, 0 to use the same number as the translator concurrency.
+    */
+   public void setOrderingLanes(final int orderingLanes) {
+      this.orderingLanes = orderingLanes;
+   }
+}
\ No newline at end of file
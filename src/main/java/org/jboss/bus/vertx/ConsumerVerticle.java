@@ -0,0 +1,69 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+
+/**
+ * Verticle providing a context to process the messages received by a Vert.x translator. One of the verticles of the translator
+ * also registers the consumers of the input endpoints on its own context.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+class ConsumerVerticle extends AbstractVerticle {
+
+   /**
+    * The translator owning the consumers.
+    */
+   private final VertxMessageTranslator translator;
+
+   /**
+    * Whether the verticle registers the consumers.
+    */
+   private final boolean registering;
+
+   /**
+    * Creates the verticle.
+    *
+    * @param translator  The translator owning the consumers.
+    * @param registering Whether the verticle registers the consumers.
+    */
+   ConsumerVerticle(final VertxMessageTranslator translator, final boolean registering) {
+      this.translator = translator;
+      this.registering = registering;
+   }
+
+   @Override
+   public void start() {
+      if (registering) {
+         translator.registerConsumers(vertx.eventBus());
+      }
+   }
+
+   /**
+    * Gets the context the verticle was deployed to.
+    *
+    * @return The context of the verticle, null before it is deployed.
+    */
+   Context getDeploymentContext() {
+      return context;
+   }
+}
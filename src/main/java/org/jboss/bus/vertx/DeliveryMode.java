@@ -0,0 +1,44 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.vertx;
+
+/**
+ * How messages are delivered to a Vert.x output endpoint.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum DeliveryMode {
+
+   /**
+    * Point-to-point delivery to one of the consumers of the address.
+    */
+   SEND,
+
+   /**
+    * Delivery to all the consumers of the address with a single call.
+    */
+   PUBLISH,
+
+   /**
+    * Point-to-point delivery expecting a reply. The reply enters the bus as a new message carrying
+    * the {@link org.jboss.bus.api.Message#CORRELATION_ID_HEADER} of the request.
+    */
+   REQUEST
+}
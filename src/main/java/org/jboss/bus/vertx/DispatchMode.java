@@ -0,0 +1,40 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.vertx;
+
+/**
+ * How the messages received from Vert.x are dispatched to the federated bus.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public enum DispatchMode {
+
+   /**
+    * The consumers are registered directly on the event bus and process the messages in the bus on their event loop.
+    * Suitable for buses that never block.
+    */
+   EVENT_LOOP,
+
+   /**
+    * The consumers are deployed as verticles and hand the messages over to worker threads, so that the event loops
+    * are never blocked by the bus. The messages are sent from the context of the verticles.
+    */
+   VERTICLE
+}
@@ -0,0 +1,277 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.vertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import org.jboss.bus.api.BinaryPayload;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.internal.ImmutableMap;
+import org.jboss.bus.internal.MessageHeaders;
+import org.jboss.bus.internal.MessageImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Vert.x event bus codec of federated bus messages. Local delivery passes the message itself without copying it,
+ * so all the local consumers of a message share the same instance. The consumers must not modify the received
+ * message, they should derive their own copy using its {@code with} methods instead. Clustered delivery uses a compact
+ * binary form where strings, numbers, booleans and binary data are written directly and only the other values
+ * are serialized. Header values keep their types.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class FederatedMessageCodec implements MessageCodec<Message, Message> {
+
+   /**
+    * Name of the codec on the event bus.
+    */
+   public static final String NAME = "federated-bus-message";
+
+   private static final byte NULL = 0;
+   private static final byte STRING = 1;
+   private static final byte INTEGER = 2;
+   private static final byte LONG = 3;
+   private static final byte BOOLEAN = 4;
+   private static final byte DOUBLE = 5;
+   private static final byte BYTES = 6;
+   private static final byte BINARY = 7;
+   private static final byte SERIALIZED = 8;
+
+   @Override
+   public void encodeToWire(final Buffer buffer, final Message message) {
+      writeValue(buffer, message.getPayload());
+
+      final Map<String, Object> headers = message.getHeaders();
+      buffer.appendInt(headers.size());
+      headers.forEach((name, value) -> {
+         writeString(buffer, name);
+         writeValue(buffer, value);
+      });
+
+      final Properties properties = message.getProperties();
+      buffer.appendInt(properties.size());
+      for (final String name : properties.stringPropertyNames()) {
+         writeString(buffer, name);
+         writeString(buffer, properties.getProperty(name));
+      }
+   }
+
+   @Override
+   public Message decodeFromWire(final int position, final Buffer buffer) {
+      final int[] pos = { position };
+
+      final Serializable payload = (Serializable) readValue(buffer, pos);
+
+      final String[] keys = new String[readInt(buffer, pos)];
+      final Object[] values = new Object[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = readString(buffer, pos);
+         values[i] = readValue(buffer, pos);
+      }
+
+      final Message message = new MessageImpl(payload, MessageHeaders.copyOf(ImmutableMap.of(keys, values)));
+
+      final int properties = readInt(buffer, pos);
+      for (int i = 0; i < properties; i++) {
+         message.setProperty(readString(buffer, pos), readString(buffer, pos));
+      }
+
+      return message;
+   }
+
+   @Override
+   public Message transform(final Message message) {
+      return message;
+   }
+
+   @Override
+   public String name() {
+      return NAME;
+   }
+
+   @Override
+   public byte systemCodecID() {
+      return -1;
+   }
+
+   /**
+    * Writes a string prefixed by its length in bytes.
+    *
+    * @param buffer The buffer.
+    * @param value  The string.
+    */
+   private static void writeString(final Buffer buffer, final String value) {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      buffer.appendInt(bytes.length).appendBytes(bytes);
+   }
+
+   /**
+    * Writes a value prefixed by its type.
+    *
+    * @param buffer The buffer.
+    * @param value  The value.
+    */
+   private static void writeValue(final Buffer buffer, final Object value) {
+      if (value == null) {
+         buffer.appendByte(NULL);
+      } else if (value instanceof String) {
+         buffer.appendByte(STRING);
+         writeString(buffer, (String) value);
+      } else if (value instanceof Integer) {
+         buffer.appendByte(INTEGER).appendInt((Integer) value);
+      } else if (value instanceof Long) {
+         buffer.appendByte(LONG).appendLong((Long) value);
+      } else if (value instanceof Boolean) {
+         buffer.appendByte(BOOLEAN).appendByte((byte) ((Boolean) value ? 1 : 0));
+      } else if (value instanceof Double) {
+         buffer.appendByte(DOUBLE).appendDouble((Double) value);
+      } else if (value instanceof byte[]) {
+         buffer.appendByte(BYTES).appendInt(((byte[]) value).length).appendBytes((byte[]) value);
+      } else if (value instanceof BinaryPayload) {
+         final byte[] bytes = ((BinaryPayload) value).getSharedBytes();
+         buffer.appendByte(BINARY).appendInt(bytes.length).appendBytes(bytes);
+      } else if (value instanceof Serializable) {
+         final byte[] bytes = serialize((Serializable) value);
+         buffer.appendByte(SERIALIZED).appendInt(bytes.length).appendBytes(bytes);
+      } else {
+         buffer.appendByte(STRING);
+         writeString(buffer, value.toString());
+      }
+   }
+
+   /**
+    * Reads an integer and moves the position.
+    *
+    * @param buffer The buffer.
+    * @param pos    The position, updated after reading.
+    * @return The integer.
+    */
+   private static int readInt(final Buffer buffer, final int[] pos) {
+      final int value = buffer.getInt(pos[0]);
+      pos[0] += 4;
+      return value;
+   }
+
+   /**
+    * Reads bytes prefixed by their length and moves the position.
+    *
+    * @param buffer The buffer.
+    * @param pos    The position, updated after reading.
+    * @return The bytes.
+    */
+   private static byte[] readBytes(final Buffer buffer, final int[] pos) {
+      final int length = readInt(buffer, pos);
+      final byte[] bytes = buffer.getBytes(pos[0], pos[0] + length);
+      pos[0] += length;
+      return bytes;
+   }
+
+   /**
+    * Reads a string prefixed by its length and moves the position.
+    *
+    * @param buffer The buffer.
+    * @param pos    The position, updated after reading.
+    * @return The string.
+    */
+   private static String readString(final Buffer buffer, final int[] pos) {
+      return new String(readBytes(buffer, pos), StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Reads a value prefixed by its type and moves the position.
+    *
+    * @param buffer The buffer.
+    * @param pos    The position, updated after reading.
+    * @return The value.
+    */
+   private static Object readValue(final Buffer buffer, final int[] pos) {
+      final byte type = buffer.getByte(pos[0]++);
+      final Object value;
+      switch (type) {
+         case NULL:
+            return null;
+         case STRING:
+            return readString(buffer, pos);
+         case INTEGER:
+            return readInt(buffer, pos);
+         case LONG:
+            value = buffer.getLong(pos[0]);
+            pos[0] += 8;
+            return value;
+         case BOOLEAN:
+            return buffer.getByte(pos[0]++) != 0;
+         case DOUBLE:
+            value = buffer.getDouble(pos[0]);
+            pos[0] += 8;
+            return value;
+         case BYTES:
+            return readBytes(buffer, pos);
+         case BINARY:
+            return BinaryPayload.wrap(readBytes(buffer, pos));
+         case SERIALIZED:
+            return deserialize(readBytes(buffer, pos));
+         default:
+            throw new IllegalStateException("Unknown value type " + type + " in federated bus message.");
+      }
+   }
+
+   /**
+    * Serializes a value using Java serialization.
+    *
+    * @param value The value.
+    * @return The serialized value.
+    */
+   private static byte[] serialize(final Serializable value) {
+      final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+         oos.writeObject(value);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+
+      return bos.toByteArray();
+   }
+
+   /**
+    * Deserializes a value using Java serialization.
+    *
+    * @param bytes The serialized value.
+    * @return The value.
+    */
+   private static Object deserialize(final byte[] bytes) {
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+         return ois.readObject();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      } catch (ClassNotFoundException e) {
+         throw new IllegalStateException("Unable to deserialize a value of a federated bus message: ", e);
+      }
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.vertx;
+
+import io.vertx.core.MultiMap;
+import org.jboss.bus.internal.ImmutableMap;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only view of the headers of a Vert.x message. The Vert.x headers are converted when they are iterated or when
+ * a lookup finds a header, lookups of missing headers go directly to the Vert.x headers and do not convert anything.
+ * Headers with a single value are exposed as strings, headers with more values as lists of strings.
+ *
+ * Vert.x looks headers up regardless of the case of their names while the bus headers are case sensitive. The view is
+ * case sensitive in all its operations, so that lookups agree with the iteration.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+final class MultiMapHeaders extends AbstractMap<String, Object> {
+
+   /**
+    * The Vert.x headers.
+    */
+   private final MultiMap headers;
+
+   /**
+    * Converted headers, created when they are needed for the first time. Converting them twice in a race is harmless.
+    */
+   private volatile ImmutableMap<Object> converted;
+
+   /**
+    * Creates a view of the Vert.x headers.
+    *
+    * @param headers The Vert.x headers.
+    */
+   MultiMapHeaders(final MultiMap headers) {
+      this.headers = headers;
+   }
+
+   /**
+    * Gets the converted headers, converts them when called for the first time.
+    *
+    * @return The converted headers.
+    */
+   @SuppressWarnings("unchecked")
+   private ImmutableMap<Object> converted() {
+      ImmutableMap<Object> result = converted;
+      if (result == null) {
+         final Map<String, Object> grouped = new LinkedHashMap<>();
+         for (final Map.Entry<String, String> header : headers.entries()) {
+            final Object previous = grouped.get(header.getKey());
+            if (previous == null) {
+               grouped.put(header.getKey(), header.getValue());
+            } else if (previous instanceof List) {
+               ((List<String>) previous).add(header.getValue());
+            } else {
+               final List<String> values = new ArrayList<>(2);
+               values.add((String) previous);
+               values.add(header.getValue());
+               grouped.put(header.getKey(), values);
+            }
+         }
+         grouped.replaceAll((name, value) -> value instanceof List ? Collections.unmodifiableList((List<String>) value) : value);
+
+         result = ImmutableMap.copyOf(grouped);
+         converted = result;
+      }
+
+      return result;
+   }
+
+   @Override
+   public Object get(final Object key) {
+      // the case insensitive check of Vert.x rules out most of the missing headers without converting
+      return key instanceof String && headers.contains((String) key) ? converted().get(key) : null;
+   }
+
+   @Override
+   public boolean containsKey(final Object key) {
+      return key instanceof String && headers.contains((String) key) && converted().containsKey(key);
+   }
+
+   @Override
+   public int size() {
+      return converted().size();
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return headers.isEmpty();
+   }
+
+   @Override
+   public void forEach(final BiConsumer<? super String, ? super Object> action) {
+      converted().forEach(action);
+   }
+
+   @Override
+   public Set<Map.Entry<String, Object>> entrySet() {
+      return converted().entrySet();
+   }
+}
@@ -19,22 +19,40 @@
  */
 package org.jboss.bus.vertx;
 
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jboss.bus.api.BinaryPayload;
 import org.jboss.bus.api.CompoundContext;
 import org.jboss.bus.api.FederatedBus;
 import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.LazyPayload;
 import org.jboss.bus.api.Message;
 import org.jboss.bus.internal.AbstractMessageTranslator;
-import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.internal.MessageHeaders;
+import org.jboss.bus.internal.ObjectFactory;
+import org.jboss.bus.internal.PooledMessage;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Message translator which connects to Vert.x.
@@ -48,6 +66,11 @@ public class VertxMessageTranslator extends AbstractMessageTranslator {
     */
    private static final Logger log = LogManager.getLogger(VertxMessageTranslator.class);
 
+   /**
+    * Maximum time in milliseconds to wait for the consumer verticles to be deployed or undeployed.
+    */
+   private static final long DEPLOYMENT_TIMEOUT_MS = 10_000;
+
    /**
     * Instance of Vertx - the system context.
     */
@@ -58,6 +81,76 @@ public class VertxMessageTranslator extends AbstractMessageTranslator {
     */
    private EventBus eventBus;
 
+   /**
+    * Output endpoints collected when the translator starts.
+    */
+   private String[] outputAddresses = new String[0];
+
+   /**
+    * Delivery modes of the output endpoints, at the same indexes as the addresses.
+    */
+   private DeliveryMode[] outputModes = new DeliveryMode[0];
+
+   /**
+    * True when some of the output endpoints expects replies.
+    */
+   private boolean requests = false;
+
+   /**
+    * How messages are delivered to the output endpoints.
+    */
+   private DeliveryMode deliveryMode = DeliveryMode.SEND;
+
+   /**
+    * Delivery modes of individual output endpoints overriding the default, as a list of endpoint=mode pairs.
+    */
+   private String endpointDeliveryModes;
+
+   /**
+    * Maximum time in milliseconds to wait for a reply in the request delivery mode.
+    */
+   private long replyTimeout = DeliveryOptions.DEFAULT_TIMEOUT;
+
+   /**
+    * True to send the messages themselves using {@link FederatedMessageCodec} instead of converting their headers.
+    */
+   private boolean messageCodec = false;
+
+   /**
+    * Delivery options shared by all messages sent with the message codec.
+    */
+   private DeliveryOptions codecOptions;
+
+   /**
+    * How the received messages are dispatched to the bus.
+    */
+   private DispatchMode dispatchMode = DispatchMode.EVENT_LOOP;
+
+   /**
+    * Number of the consumer verticles deployed in the verticle dispatch mode.
+    */
+   private int verticleInstances = 1;
+
+   /**
+    * Context the messages are sent from, null to send them from the calling thread.
+    */
+   private Context context;
+
+   /**
+    * Deployment IDs of the consumer verticles.
+    */
+   private final List<String> deploymentIds = new CopyOnWriteArrayList<>();
+
+   /**
+    * Contexts of the consumer verticles the received messages are spread over in the verticle dispatch mode.
+    */
+   private volatile Context[] dispatchContexts = new Context[0];
+
+   /**
+    * Counter selecting the context of the next received message in a round-robin fashion.
+    */
+   private final AtomicInteger nextContext = new AtomicInteger();
+
    /**
     * Sets the default name of the translator.
     */
@@ -84,52 +177,553 @@ public class VertxMessageTranslator extends AbstractMessageTranslator {
 
       eventBus = vertx.eventBus();
 
-      if (inputEndpoints.size() > 0) {
-         inputEndpoints.forEach(endpoint -> {
-            eventBus.consumer(endpoint, vertxMessage -> {
-               final Message message = new MessageImpl();
-               final Map<String, Object> headers = new HashMap<>();
-
-               for (final String key : vertxMessage.headers().names()) {
-                  final List<String> list = vertxMessage.headers().getAll(key);
-                  if (list.size() == 1) {
-                     headers.put(key, vertxMessage.headers().get(key));
-                  } else {
-                     headers.put(key, list);
-                  }
-               }
-               if (!headers.containsKey(TRANSLATOR_SIGNATURE)) {
-                  message.setHeaders(headers);
+      if (outputEndpoints != null) {
+         outputAddresses = outputEndpoints.toArray(new String[outputEndpoints.size()]);
+      }
 
-                  final Object body = vertxMessage.body();
+      final Map<String, String> modes = parseOverrides(endpointDeliveryModes);
+      outputModes = new DeliveryMode[outputAddresses.length];
+      requests = false;
+      for (int i = 0; i < outputAddresses.length; i++) {
+         outputModes[i] = parseOverride(modes, outputAddresses[i], value -> DeliveryMode.valueOf(ObjectFactory.camelCaseToEnum(value)), deliveryMode);
+         requests |= outputModes[i] == DeliveryMode.REQUEST;
+      }
 
-                  if (body instanceof Serializable) {
-                     message.setPayload((Serializable) body);
-                  } else {
-                     message.setPayload(body.toString());
-                  }
+      if (messageCodec) {
+         registerCodec(eventBus);
+         codecOptions = new DeliveryOptions().setCodecName(FederatedMessageCodec.NAME).addHeader(TRANSLATOR_SIGNATURE, "true");
+      }
 
-                  message.setHeader(Message.FROM_HEADER, getName() + ":" + endpoint);
-                  message.setHeader(Message.SOURCE_HEADER, getName());
-                  federatedBus.processMessage(message);
-               }
-            });
+      if (inputEndpoints != null && inputEndpoints.size() > 0) {
+         if (dispatchMode == DispatchMode.VERTICLE) {
+            deployConsumers();
+         } else {
+            registerConsumers(eventBus);
+         }
+      }
+   }
+
+   @Override
+   public void stop() {
+      if (!deploymentIds.isEmpty()) {
+         final CountDownLatch latch = new CountDownLatch(deploymentIds.size());
+         deploymentIds.forEach(deploymentId -> vertx.undeploy(deploymentId, result -> latch.countDown()));
+         await(latch, "undeployed");
+         deploymentIds.clear();
+      }
+      dispatchContexts = new Context[0];
+      context = null;
+   }
+
+   /**
+    * Deploys the consumer verticles and waits for them to start. Only the first of the verticles registers the consumers,
+    * so that each published message is received once, and the received messages are spread over the contexts
+    * of all the verticles. The messages are sent from the context of the first of the verticles.
+    */
+   private void deployConsumers() {
+      final ConsumerVerticle[] verticles = new ConsumerVerticle[Math.max(1, verticleInstances)];
+      final CountDownLatch latch = new CountDownLatch(verticles.length);
+      for (int i = 0; i < verticles.length; i++) {
+         verticles[i] = new ConsumerVerticle(this, i == 0);
+         vertx.deployVerticle(verticles[i], result -> {
+            if (result.succeeded()) {
+               deploymentIds.add(result.result());
+            } else {
+               log.error("Unable to deploy consumer verticle of translator {}: ", getName(), result.cause());
+            }
+            latch.countDown();
+         });
+      }
+
+      await(latch, "deployed");
+      context = verticles[0].getDeploymentContext() != null ? verticles[0].getDeploymentContext() : vertx.getOrCreateContext();
+
+      final List<Context> contexts = new ArrayList<>(verticles.length);
+      for (final ConsumerVerticle verticle : verticles) {
+         if (verticle.getDeploymentContext() != null) {
+            contexts.add(verticle.getDeploymentContext());
+         }
+      }
+      dispatchContexts = contexts.toArray(new Context[contexts.size()]);
+   }
+
+   /**
+    * Waits for the consumer verticles to be deployed or undeployed.
+    *
+    * @param latch  Latch counted down for each verticle.
+    * @param action What happens to the verticles, for logging.
+    */
+   private void await(final CountDownLatch latch, final String action) {
+      try {
+         if (!latch.await(DEPLOYMENT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            log.warn("Consumer verticles of translator {} were not {} within {} ms.", getName(), action, DEPLOYMENT_TIMEOUT_MS);
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Registers the consumers of all the input endpoints on the event bus. Called by the first consumer verticle from its context.
+    *
+    * @param eventBus The event bus.
+    */
+   void registerConsumers(final EventBus eventBus) {
+      inputEndpoints.forEach(endpoint -> {
+         final String from = getName() + ":" + endpoint;
+         eventBus.consumer(endpoint, vertxMessage -> receive(from, vertxMessage));
+      });
+   }
+
+   /**
+    * Handles a received Vert.x message, on the context of the next consumer verticle in the verticle dispatch mode.
+    *
+    * @param from         Value of the from header of the message.
+    * @param vertxMessage The received Vert.x message.
+    */
+   private void receive(final String from, final io.vertx.core.eventbus.Message<Object> vertxMessage) {
+      final Context[] contexts = dispatchContexts;
+      if (contexts.length > 1) {
+         contexts[Math.floorMod(nextContext.getAndIncrement(), contexts.length)].runOnContext(v -> handle(from, vertxMessage));
+      } else {
+         handle(from, vertxMessage);
+      }
+   }
+
+   /**
+    * Translates a received Vert.x message and dispatches it to the bus. Messages signed by a translator are ignored.
+    *
+    * @param from         Value of the from header of the message.
+    * @param vertxMessage The received Vert.x message.
+    */
+   private void handle(final String from, final io.vertx.core.eventbus.Message<Object> vertxMessage) {
+      final Message message = toMessage(from, vertxMessage, null);
+      if (message != null) {
+         dispatch(message);
+      }
+   }
+
+   /**
+    * Translates a Vert.x message to a bus message.
+    *
+    * @param from          Value of the from header of the message.
+    * @param vertxMessage  The Vert.x message.
+    * @param correlationId Value of the correlation identifier header, null when the message is not a reply.
+    * @return The bus message, null when the Vert.x message is signed by a translator.
+    */
+   private Message toMessage(final String from, final io.vertx.core.eventbus.Message<Object> vertxMessage, final String correlationId) {
+      final MultiMap vertxHeaders = vertxMessage.headers();
+      if (vertxHeaders.contains(TRANSLATOR_SIGNATURE)) {
+         return null;
+      }
+
+      final Object body = vertxMessage.body();
+      if (body instanceof Message) {
+         final Message received = (Message) body;
+         MessageHeaders headers = MessageHeaders.of(received.getHeaders(), from, getName());
+         if (correlationId != null) {
+            headers = headers.with(Message.CORRELATION_ID_HEADER, correlationId);
+         }
+
+         final Message message = newMessage(received.getPayload(), headers);
+         final Properties properties = received.getProperties();
+         if (!properties.isEmpty()) {
+            // set all at once, withProperty would create a new message per property and lose the pooled instance
+            message.setProperties(properties);
+         }
+         return message;
+      }
+
+      MessageHeaders headers = vertxHeaders.isEmpty() ? MessageHeaders.of(null, from, getName()) :
+            MessageHeaders.view(new MultiMapHeaders(vertxHeaders), from, getName());
+      if (correlationId != null) {
+         headers = headers.with(Message.CORRELATION_ID_HEADER, correlationId);
+      }
+
+      return newMessage(toPayload(body), headers);
+   }
+
+   /**
+    * Passes the message to the bus. In the verticle dispatch mode, the message is processed by a worker thread
+    * and the event loop is released immediately.
+    *
+    * @param message The message.
+    */
+   private void dispatch(final Message message) {
+      if (dispatchMode == DispatchMode.VERTICLE) {
+         vertx.<Void>executeBlocking(future -> {
+            federatedBus.processMessage(message);
+            future.complete();
+         }, false, result -> {
+            if (result.failed()) {
+               log.error("Unable to process message: ", result.cause());
+            }
          });
+      } else {
+         federatedBus.processMessage(message);
       }
    }
 
    @Override
    public void sendMessage(final Message message) throws FederatedBusException {
-      final DeliveryOptions options = new DeliveryOptions();
+      sendMessageAsync(message);
+   }
+
+   /**
+    * Sends the message to all the output endpoints. The message is converted in the calling thread, the sends happen
+    * on the context of the consumer verticles in the verticle dispatch mode.
+    *
+    * @param message The message to be distributed.
+    * @return Stage completed once the message was passed to the event bus.
+    */
+   @Override
+   public CompletionStage<Void> sendMessageAsync(final Message message) {
+      if (outputAddresses.length == 0) {
+         return CompletableFuture.completedFuture(null);
+      }
+
+      final Object body = toEventBusBody(message);
+      final DeliveryOptions options = toDeliveryOptions(message);
+      final String correlationId = requests ? correlationId(message) : null;
+      final Object from = requests ? message.getHeader(Message.FROM_HEADER) : null;
+
+      return onContext(() -> send(body, options, correlationId, from));
+   }
+
+   /**
+    * Sends the whole batch within a single task on the context of the consumer verticles in the verticle dispatch mode,
+    * so that the batch costs one context switch instead of one per message. The event bus has no multi-message send,
+    * so the messages are sent one by one in the event loop dispatch mode.
+    *
+    * @param messages The messages to be distributed in the given order.
+    * @return Stage completed once all the messages were passed to the event bus.
+    */
+   @Override
+   public CompletionStage<Void> sendMessagesAsync(final List<Message> messages) {
+      if (context == null) {
+         return super.sendMessagesAsync(messages);
+      }
 
-      for (final String key : message.getHeaders().keySet()) {
-         options.addHeader(key, message.getHeader(key).toString());
+      if (outputAddresses.length == 0 || messages.isEmpty()) {
+         return CompletableFuture.completedFuture(null);
       }
 
+      final Object[] bodies = new Object[messages.size()];
+      final DeliveryOptions[] options = new DeliveryOptions[bodies.length];
+      final String[] correlationIds = new String[bodies.length];
+      final Object[] froms = new Object[bodies.length];
+      for (int i = 0; i < bodies.length; i++) {
+         bodies[i] = toEventBusBody(messages.get(i));
+         options[i] = toDeliveryOptions(messages.get(i));
+         correlationIds[i] = requests ? correlationId(messages.get(i)) : null;
+         froms[i] = requests ? messages.get(i).getHeader(Message.FROM_HEADER) : null;
+      }
+
+      return onContext(() -> {
+         for (int i = 0; i < bodies.length; i++) {
+            send(bodies[i], options[i], correlationIds[i], froms[i]);
+         }
+      });
+   }
+
+   /**
+    * Runs the sends on the context of the consumer verticles, or directly when there is no such context or when
+    * already running on it.
+    *
+    * @param sends The sends to be run.
+    * @return Stage completed once the sends were run.
+    */
+   private CompletionStage<Void> onContext(final Runnable sends) {
+      final CompletableFuture<Void> result = new CompletableFuture<>();
+      final Context sendContext = context;
+
+      if (sendContext == null || Vertx.currentContext() == sendContext) {
+         run(sends, result);
+      } else {
+         sendContext.runOnContext(v -> run(sends, result));
+      }
+
+      return result;
+   }
+
+   /**
+    * Runs the sends and completes the result.
+    *
+    * @param sends  The sends to be run.
+    * @param result Stage completed once the sends were run, exceptionally when they failed.
+    */
+   private static void run(final Runnable sends, final CompletableFuture<Void> result) {
+      try {
+         sends.run();
+         result.complete(null);
+      } catch (RuntimeException e) {
+         result.completeExceptionally(e);
+      }
+   }
+
+   /**
+    * Sends a single message to all the output endpoints according to their delivery modes. A reply is not sent back
+    * as a request to the endpoint it came from, which would otherwise request it again in an endless loop.
+    *
+    * @param body          Body of the Vert.x message.
+    * @param options       Delivery options of the Vert.x message.
+    * @param correlationId Correlation identifier of the requests, null when there are no request endpoints.
+    * @param from          Value of the from header of the message, null when there are no request endpoints.
+    */
+   private void send(final Object body, final DeliveryOptions options, final String correlationId, final Object from) {
+      for (int i = 0; i < outputAddresses.length; i++) {
+         switch (outputModes[i]) {
+            case PUBLISH:
+               eventBus.publish(outputAddresses[i], body, options);
+               break;
+            case REQUEST:
+               if (!(getName() + ":" + outputAddresses[i]).equals(from)) {
+                  request(outputAddresses[i], body, options, correlationId);
+               }
+               break;
+            default:
+               eventBus.send(outputAddresses[i], body, options);
+         }
+      }
+   }
+
+   /**
+    * Sends a request to an output endpoint. The reply is dispatched to the bus as a new message with the correlation
+    * identifier of the request.
+    *
+    * @param address       Address of the output endpoint.
+    * @param body          Body of the Vert.x message.
+    * @param options       Delivery options of the Vert.x message.
+    * @param correlationId Correlation identifier of the request.
+    */
+   private void request(final String address, final Object body, final DeliveryOptions options, final String correlationId) {
+      final DeliveryOptions requestOptions = new DeliveryOptions().setSendTimeout(replyTimeout);
+      if (options.getCodecName() != null) {
+         requestOptions.setCodecName(options.getCodecName());
+      }
+      if (options.getHeaders() != null) {
+         options.getHeaders().forEach(header -> {
+            if (!Message.CORRELATION_ID_HEADER.equals(header.getKey())) {
+               requestOptions.addHeader(header.getKey(), header.getValue());
+            }
+         });
+      }
+      requestOptions.addHeader(Message.CORRELATION_ID_HEADER, correlationId);
+
+      eventBus.<Object>send(address, body, requestOptions, reply -> {
+         if (reply.succeeded()) {
+            final Message message = toMessage(getName() + ":" + address, reply.result(), correlationId);
+            if (message != null) {
+               dispatch(message);
+            }
+         } else {
+            log.warn("No reply to request {} from {}: ", correlationId, address, reply.cause());
+         }
+      });
+   }
+
+   /**
+    * Gets the correlation identifier of the requests carrying the message. This is the correlation identifier header
+    * of the message when it has any, a new unique identifier otherwise.
+    *
+    * @param message The message.
+    * @return The correlation identifier.
+    */
+   private static String correlationId(final Message message) {
+      final Object correlationId = message.getHeader(Message.CORRELATION_ID_HEADER);
+
+      return correlationId != null ? correlationId.toString() : UUID.randomUUID().toString();
+   }
+
+   /**
+    * Gets the body of the Vert.x message carrying the message. This is the message itself when the message codec is used.
+    *
+    * @param message The message.
+    * @return The body of the Vert.x message.
+    */
+   private Object toEventBusBody(final Message message) {
+      if (messageCodec) {
+         // pooled messages are recycled once sent, local consumers need an instance of their own
+         return message instanceof PooledMessage ? message.withPayload(message.getPayload()) : message;
+      }
+
+      return toBody(message.getPayload());
+   }
+
+   /**
+    * Gets the delivery options of the Vert.x message carrying the message. The options are shared by all messages when
+    * the message codec is used.
+    *
+    * @param message The message.
+    * @return The delivery options.
+    */
+   private DeliveryOptions toDeliveryOptions(final Message message) {
+      if (messageCodec) {
+         return codecOptions;
+      }
+
+      final DeliveryOptions options = new DeliveryOptions();
+      for (final Map.Entry<String, Object> header : message.getHeaders().entrySet()) {
+         options.addHeader(header.getKey(), header.getValue().toString());
+      }
       options.addHeader(TRANSLATOR_SIGNATURE, "true");
 
-      for (String endpoint : outputEndpoints) {
-         eventBus.send(endpoint, message.getPayload(), options);
+      return options;
+   }
+
+   /**
+    * Registers the message codec with the event bus unless it has already been registered by another translator.
+    *
+    * @param eventBus The event bus.
+    */
+   private static void registerCodec(final EventBus eventBus) {
+      synchronized (eventBus) {
+         try {
+            eventBus.registerCodec(new FederatedMessageCodec());
+         } catch (IllegalStateException e) {
+            log.debug("Federated message codec already registered: ", e);
+         }
+      }
+   }
+
+   /**
+    * Gets whether the messages are sent using {@link FederatedMessageCodec}.
+    * @return True if and only if the messages are sent using the message codec.
+    */
+   public boolean isMessageCodec() {
+      return messageCodec;
+   }
+
+   /**
+    * Sets whether the messages are sent using {@link FederatedMessageCodec}. The messages are then passed to local
+    * consumers as they are and sent in a compact binary form to other cluster nodes, headers keep their types.
+    * The consumers receive the messages as {@link Message} instances.
+    * @param messageCodec True to send the messages using the message codec.
+    */
+   public void setMessageCodec(final boolean messageCodec) {
+      this.messageCodec = messageCodec;
+   }
+
+   /**
+    * Gets how messages are delivered to the output endpoints.
+    * @return The delivery mode.
+    */
+   public DeliveryMode getDeliveryMode() {
+      return deliveryMode;
+   }
+
+   /**
+    * Sets how messages are delivered to the output endpoints.
+    * @param deliveryMode The delivery mode.
+    */
+   public void setDeliveryMode(final DeliveryMode deliveryMode) {
+      this.deliveryMode = deliveryMode;
+   }
+
+   /**
+    * Gets the delivery modes of individual output endpoints.
+    * @return Comma separated list of endpoint=mode pairs.
+    */
+   public String getEndpointDeliveryModes() {
+      return endpointDeliveryModes;
+   }
+
+   /**
+    * Sets the delivery modes of individual output endpoints, overriding the delivery mode.
+    * @param endpointDeliveryModes Comma separated list of endpoint=mode pairs, e.g. {@code news=publish, prices=request}.
+    */
+   public void setEndpointDeliveryModes(final String endpointDeliveryModes) {
+      this.endpointDeliveryModes = endpointDeliveryModes;
+   }
+
+   /**
+    * Gets the maximum time to wait for a reply in the request delivery mode.
+    * @return The reply timeout in milliseconds.
+    */
+   public long getReplyTimeout() {
+      return replyTimeout;
+   }
+
+   /**
+    * Sets the maximum time to wait for a reply in the request delivery mode. Requests without a reply are logged.
+    * @param replyTimeout The reply timeout in milliseconds.
+    */
+   public void setReplyTimeout(final long replyTimeout) {
+      this.replyTimeout = replyTimeout;
+   }
+
+   /**
+    * Gets how the received messages are dispatched to the bus.
+    * @return The dispatch mode.
+    */
+   public DispatchMode getDispatchMode() {
+      return dispatchMode;
+   }
+
+   /**
+    * Sets how the received messages are dispatched to the bus. Use the verticle dispatch mode with buses that may block,
+    * like the Drools bus firing the rules.
+    * @param dispatchMode The dispatch mode.
+    */
+   public void setDispatchMode(final DispatchMode dispatchMode) {
+      this.dispatchMode = dispatchMode;
+   }
+
+   /**
+    * Gets the number of the consumer verticles deployed in the verticle dispatch mode.
+    * @return The number of the consumer verticles.
+    */
+   public int getVerticleInstances() {
+      return verticleInstances;
+   }
+
+   /**
+    * Sets the number of the consumer verticles deployed in the verticle dispatch mode. Each verticle runs on its own
+    * event loop, more of them spread the translation of the received messages over more event loops. The consumers
+    * are registered only once regardless of this number, so published messages are not dispatched multiple times.
+    * @param verticleInstances The number of the consumer verticles.
+    */
+   public void setVerticleInstances(final int verticleInstances) {
+      this.verticleInstances = verticleInstances;
+   }
+
+   /**
+    * Converts the body of a Vert.x message to a message payload. Binary bodies share their content with the payload.
+    *
+    * @param body The body of the Vert.x message.
+    * @return The message payload.
+    */
+   private static Serializable toPayload(final Object body) {
+      if (body instanceof Buffer) {
+         return BinaryPayload.wrap(((Buffer) body).getByteBuf().nioBuffer());
+      } else if (body instanceof byte[]) {
+         return BinaryPayload.wrap((byte[]) body);
+      } else if (body instanceof Serializable) {
+         return (Serializable) body;
+      }
+
+      return new LazyPayload(body);
+   }
+
+   /**
+    * Converts the message payload to a body of a Vert.x message. Binary payloads are wrapped in a buffer sharing their content.
+    * Lazy payloads are passed in their native form when Vert.x has a codec for it, converted to a string otherwise.
+    *
+    * @param payload The message payload.
+    * @return The body of the Vert.x message.
+    */
+   private static Object toBody(final Serializable payload) {
+      if (payload instanceof BinaryPayload) {
+         return Buffer.buffer(Unpooled.wrappedBuffer(((BinaryPayload) payload).asByteBuffer()));
+      } else if (payload instanceof LazyPayload) {
+         final Object body = ((LazyPayload) payload).getBody();
+         if (body instanceof Buffer || body instanceof JsonObject || body instanceof JsonArray) {
+            return body;
+         }
+
+         return ((LazyPayload) payload).as(String.class);
       }
+
+      return payload;
    }
 }
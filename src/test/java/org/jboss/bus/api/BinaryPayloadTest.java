@@ -0,0 +1,85 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class BinaryPayloadTest {
+
+   @Test
+   public void testSharing() {
+      final byte[] bytes = "Hello world".getBytes();
+      final BinaryPayload payload = BinaryPayload.wrap(bytes);
+
+      Assert.assertEquals(payload.length(), 11);
+      Assert.assertSame(payload.getSharedBytes(), bytes);
+      Assert.assertNotSame(payload.getBytes(), bytes);
+      Assert.assertEquals(payload.getBytes(), bytes);
+
+      final BinaryPayload slice = payload.slice(6, 5);
+      Assert.assertEquals(new String(slice.getBytes()), "world");
+      Assert.assertEquals(slice.slice(1, 3), BinaryPayload.wrap("orl".getBytes()));
+
+      bytes[6] = 'W';
+      Assert.assertEquals(new String(slice.getBytes()), "World");
+      Assert.assertEquals(payload.duplicate(), payload);
+
+      Assert.assertTrue(payload.asByteBuffer().isReadOnly());
+   }
+
+   @Test
+   public void testDirectBuffer() {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+      buffer.put(new byte[] { 1, 2, 3, 4 }).flip();
+      buffer.get();
+
+      final BinaryPayload payload = BinaryPayload.wrap(buffer);
+      Assert.assertTrue(payload.isDirect());
+      Assert.assertEquals(payload.length(), 3);
+      Assert.assertEquals(payload.getBytes(), new byte[] { 2, 3, 4 });
+      Assert.assertEquals(buffer.position(), 1);
+   }
+
+   @Test
+   public void testSerialization() throws Exception {
+      final BinaryPayload payload = BinaryPayload.wrap("Hello world".getBytes(), 6, 5);
+
+      final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+         oos.writeObject(payload);
+      }
+
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+         final BinaryPayload read = (BinaryPayload) ois.readObject();
+         Assert.assertEquals(read, payload);
+         Assert.assertEquals(new String(read.getBytes()), "world");
+      }
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.api;
+
+import org.jboss.bus.internal.MessageImpl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class LazyPayloadTest {
+
+   @Test
+   public void testLazyConversion() {
+      final AtomicInteger conversions = new AtomicInteger();
+      PayloadConverters.register(NativeBody.class, Integer.class, body -> {
+         conversions.incrementAndGet();
+         return body.value;
+      });
+
+      try {
+         final NativeBody body = new NativeBody(42);
+         final Message message = new MessageImpl(new LazyPayload(body));
+
+         Assert.assertSame(message.getNativePayload(), body);
+         Assert.assertEquals(conversions.get(), 0);
+
+         Assert.assertEquals(message.getPayload(Integer.class), Integer.valueOf(42));
+         Assert.assertEquals(message.getPayload(Number.class), Integer.valueOf(42));
+         Assert.assertEquals(message.getPayload(Integer.class), Integer.valueOf(42));
+         Assert.assertEquals(conversions.get(), 1);
+
+         Assert.assertEquals(message.getPayload(String.class), "native 42");
+         Assert.assertEquals(message.getPayload().toString(), "native 42");
+
+         try {
+            message.getPayload(Long.class);
+            Assert.fail("No converter to Long expected.");
+         } catch (IllegalArgumentException e) {
+            // expected
+         }
+      } finally {
+         PayloadConverters.unregister(NativeBody.class, Integer.class);
+      }
+
+      Assert.assertEquals(PayloadConverters.producedClass(NativeBody.class, Integer.class), Integer.class);
+      try {
+         PayloadConverters.convert(new NativeBody(1), Integer.class);
+         Assert.fail("The converter should be unregistered.");
+      } catch (IllegalArgumentException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testBuiltInConverters() {
+      final Message message = new MessageImpl("hello");
+
+      Assert.assertEquals(message.getPayload(String.class), "hello");
+      Assert.assertEquals(message.getPayload(byte[].class), "hello".getBytes());
+      Assert.assertEquals(message.getPayload(BinaryPayload.class).length(), 5);
+      Assert.assertEquals(PayloadConverters.convert(BinaryPayload.wrap("hi".getBytes()), String.class), "hi");
+   }
+
+   private static class NativeBody {
+
+      private final int value;
+
+      private NativeBody(final int value) {
+         this.value = value;
+      }
+
+      @Override
+      public String toString() {
+         return "native " + value;
+      }
+   }
+}
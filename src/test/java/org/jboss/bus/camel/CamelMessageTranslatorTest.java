@@ -19,14 +19,23 @@
  */
 package org.jboss.bus.camel;
 
+import org.apache.camel.AsyncCallback;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Consumer;
+import org.apache.camel.Exchange;
 import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.Producer;
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultAsyncProducer;
 import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultEndpoint;
+import org.jboss.bus.api.FederatedBusException;
 import org.jboss.bus.config.FederatedBusFactory;
 import org.jboss.bus.internal.AbstractMessageTranslator;
 import org.jboss.bus.internal.CompoundContextImpl;
+import org.jboss.bus.internal.MessageImpl;
 import org.jboss.bus.simple.SimpleFederatedBus;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -34,6 +43,10 @@ import org.testng.annotations.Test;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
@@ -52,6 +65,7 @@ public class CamelMessageTranslatorTest {
       CompoundContextImpl compoundContext = new CompoundContextImpl();
       compoundContext.putContext(CamelContext.class, camelContext);
       federatedBus.setCompoundContext(compoundContext);
+      federatedBus.setRoutes("camel -> camel");
       CamelMessageTranslator messageTranslator = new CamelMessageTranslator();
       messageTranslator.setInputEndpoints("direct:test1, direct:test2");
       messageTranslator.setOutputEndpoints("direct:test3, direct:test4");
@@ -104,6 +118,208 @@ public class CamelMessageTranslatorTest {
       FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
    }
 
+   @Test
+   public void testBinaryBody() throws Exception {
+      CamelContext camelContext = new DefaultCamelContext();
+      camelContext.start();
+
+      SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      CompoundContextImpl compoundContext = new CompoundContextImpl();
+      compoundContext.putContext(CamelContext.class, camelContext);
+      federatedBus.setCompoundContext(compoundContext);
+      federatedBus.setRoutes("camel -> camel");
+      CamelMessageTranslator messageTranslator = new CamelMessageTranslator();
+      messageTranslator.setInputEndpoints("direct:binaryIn");
+      messageTranslator.setOutputEndpoints("direct:binaryOut");
+      federatedBus.registerTranslator(messageTranslator);
+
+      federatedBus.start();
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+      camelContext.getEndpoint("direct:binaryOut").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+      final byte[] bytes = new byte[] { 0, 1, 2, (byte) 0xff };
+      camelContext.createProducerTemplate().sendBody("direct:binaryIn", bytes);
+      Thread.sleep(100);
+
+      Assert.assertEquals(results.size(), 1);
+      Assert.assertSame(results.get(0).getBody(), bytes);
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testAsyncSend() throws Exception {
+      CamelContext camelContext = new DefaultCamelContext();
+      camelContext.start();
+
+      CompoundContextImpl compoundContext = new CompoundContextImpl();
+      compoundContext.putContext(CamelContext.class, camelContext);
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+      camelContext.getEndpoint("direct:asyncOk").createConsumer(exchange -> results.add(exchange.getIn())).start();
+      camelContext.getEndpoint("direct:asyncFail").createConsumer(exchange -> {
+         throw new IllegalStateException("failed");
+      }).start();
+
+      CamelMessageTranslator ok = new CamelMessageTranslator();
+      ok.setOutputEndpoints("direct:asyncOk");
+      ok.setMaxInFlight(1);
+      ok.setMaxInFlightPerEndpoint(1);
+      ok.initialize(compoundContext);
+      ok.start(new SimpleFederatedBus());
+
+      CamelMessageTranslator fail = new CamelMessageTranslator();
+      fail.setOutputEndpoints("direct:asyncOk, direct:asyncFail");
+      fail.initialize(compoundContext);
+      fail.start(new SimpleFederatedBus());
+
+      final org.jboss.bus.api.Message message = new MessageImpl("hello");
+      for (int i = 0; i < 10; i++) {
+         ok.sendMessageAsync(message).toCompletableFuture().get(1, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals(results.size(), 10);
+
+      try {
+         fail.sendMessagesAsync(Collections.singletonList(message)).toCompletableFuture().get(1, TimeUnit.SECONDS);
+         Assert.fail("The delivery should have failed.");
+      } catch (ExecutionException e) {
+         Assert.assertTrue(e.getCause() instanceof FederatedBusException);
+      }
+      Assert.assertEquals(results.size(), 11);
+
+      ok.stop();
+      fail.stop();
+      camelContext.stop();
+   }
+
+   @Test
+   public void testAsyncHandoff() throws Exception {
+      CamelContext camelContext = new DefaultCamelContext();
+      camelContext.start();
+
+      SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      CompoundContextImpl compoundContext = new CompoundContextImpl();
+      compoundContext.putContext(CamelContext.class, camelContext);
+      federatedBus.setCompoundContext(compoundContext);
+      federatedBus.setRoutes("camel -> camel");
+      CamelMessageTranslator messageTranslator = new CamelMessageTranslator();
+      messageTranslator.setInputEndpoints("direct:handoffIn, direct:inlineIn");
+      messageTranslator.setOutputEndpoints("direct:handoffOut");
+      messageTranslator.setHandoffMode(HandoffMode.ASYNC);
+      messageTranslator.setConsumerConcurrency(4);
+      messageTranslator.setHandoffQueueSize(10);
+      messageTranslator.setEndpointHandoffModes("direct:inlineIn=inline");
+      federatedBus.registerTranslator(messageTranslator);
+
+      federatedBus.start();
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+      camelContext.getEndpoint("direct:handoffOut").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+      final ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+      for (int i = 0; i < 100; i++) {
+         producerTemplate.sendBody("direct:handoffIn", "hello" + i);
+      }
+      producerTemplate.sendBody("direct:inlineIn", "inline");
+
+      final long deadline = System.currentTimeMillis() + 5_000;
+      while (results.size() < 101 && System.currentTimeMillis() < deadline) {
+         Thread.sleep(10);
+      }
+
+      Assert.assertEquals(results.size(), 101);
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testInFlightLimit() throws Exception {
+      CamelContext camelContext = new DefaultCamelContext();
+      camelContext.start();
+
+      final DelayedEndpoint endpoint = new DelayedEndpoint(camelContext);
+      camelContext.addEndpoint(DelayedEndpoint.URI, endpoint);
+
+      CompoundContextImpl compoundContext = new CompoundContextImpl();
+      compoundContext.putContext(CamelContext.class, camelContext);
+
+      final CamelMessageTranslator messageTranslator = new CamelMessageTranslator();
+      messageTranslator.setOutputEndpoints(DelayedEndpoint.URI);
+      messageTranslator.setMaxInFlight(2);
+      messageTranslator.initialize(compoundContext);
+      messageTranslator.start(new SimpleFederatedBus());
+
+      final org.jboss.bus.api.Message message = new MessageImpl("hello");
+      final CompletableFuture<Void> first = messageTranslator.sendMessageAsync(message).toCompletableFuture();
+      final CompletableFuture<Void> second = messageTranslator.sendMessageAsync(message).toCompletableFuture();
+      Assert.assertEquals(endpoint.pending(), 2);
+
+      final CompletableFuture<CompletionStage<Void>> third = CompletableFuture.supplyAsync(() -> messageTranslator.sendMessageAsync(message));
+      Thread.sleep(100);
+      Assert.assertFalse(third.isDone(), "The sending thread should wait for a free permit.");
+      Assert.assertEquals(endpoint.pending(), 2);
+
+      endpoint.completeOne();
+      final CompletableFuture<Void> released = third.get(1, TimeUnit.SECONDS).toCompletableFuture();
+      first.get(1, TimeUnit.SECONDS);
+      Assert.assertFalse(second.isDone());
+      Assert.assertFalse(released.isDone());
+
+      endpoint.completeOne();
+      endpoint.completeOne();
+      second.get(1, TimeUnit.SECONDS);
+      released.get(1, TimeUnit.SECONDS);
+
+      messageTranslator.stop();
+      camelContext.stop();
+   }
+
+   /**
+    * Asynchronous endpoint that completes the exchanges only when asked to.
+    */
+   private static class DelayedEndpoint extends DefaultEndpoint {
+
+      private static final String URI = "delayed://out";
+
+      private final List<AsyncCallback> callbacks = Collections.synchronizedList(new LinkedList<>());
+
+      private DelayedEndpoint(final CamelContext camelContext) {
+         super(URI, camelContext);
+      }
+
+      @Override
+      public Producer createProducer() throws Exception {
+         return new DefaultAsyncProducer(this) {
+            @Override
+            public boolean process(final Exchange exchange, final AsyncCallback callback) {
+               callbacks.add(callback);
+               return false;
+            }
+         };
+      }
+
+      @Override
+      public Consumer createConsumer(final Processor processor) throws Exception {
+         throw new UnsupportedOperationException("The delayed endpoint cannot be consumed.");
+      }
+
+      @Override
+      public boolean isSingleton() {
+         return true;
+      }
+
+      private int pending() {
+         return callbacks.size();
+      }
+
+      private void completeOne() {
+         callbacks.remove(0).done(false);
+      }
+   }
+
    private static class TestCamelRoutes extends RouteBuilder {
       @Override
       public void configure() throws Exception {
@@ -0,0 +1,107 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.internal.CompoundContextImpl;
+import org.jboss.bus.internal.MessageHeaders;
+import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.simple.SimpleFederatedBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the outbound path of the Camel translator, from a bus message to exchanges consumed by direct endpoints.
+ * Run the main method, ideally with {@code -prof gc} to see the allocation rate.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CamelOutboundBenchmark {
+
+   @Param({ "1", "4", "16" })
+   private int endpoints;
+
+   private CamelContext camelContext;
+
+   private CamelMessageTranslator translator;
+
+   private final Message message = new MessageImpl("payload", MessageHeaders.of(null, "vertx:in", "vertx"))
+         .withHeader("myHeader", "myValue").withHeader("count", 42);
+
+   @Setup
+   public void setup() throws Exception {
+      camelContext = new DefaultCamelContext();
+      camelContext.start();
+
+      final StringJoiner outputEndpoints = new StringJoiner(",");
+      for (int i = 0; i < endpoints; i++) {
+         final String endpoint = "direct:out" + i;
+         camelContext.getEndpoint(endpoint).createConsumer(exchange -> {}).start();
+         outputEndpoints.add(endpoint);
+      }
+
+      final CompoundContextImpl compoundContext = new CompoundContextImpl();
+      compoundContext.putContext(CamelContext.class, camelContext);
+
+      translator = new CamelMessageTranslator();
+      translator.setOutputEndpoints(outputEndpoints.toString());
+      translator.initialize(compoundContext);
+      translator.start(new SimpleFederatedBus());
+   }
+
+   @TearDown
+   public void tearDown() throws Exception {
+      translator.stop();
+      camelContext.stop();
+   }
+
+   @Benchmark
+   public Message sendMessage() throws Exception {
+      translator.sendMessage(message);
+      return message;
+   }
+
+   public static void main(final String[] args) throws Exception {
+      new Runner(new OptionsBuilder().include(CamelOutboundBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -64,4 +64,28 @@ public class CdiMessageTranslatorTest {
       FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
    }
 
-}
\ No newline at end of file
+   @Test
+   public void testEventSubscription() throws Exception {
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/cdi-filtered-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+
+      context.getContext(CamelContext.class).getEndpoint("direct:testCdi").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+      context.getContext(WeldContainer.class).event().fire("myMessageFromCdi");
+      context.getContext(WeldContainer.class).event().fire(42);
+
+      Thread.sleep(500);
+
+      Assert.assertEquals(results.size(), 1);
+      Assert.assertEquals(results.get(0).getBody(), 42);
+      Assert.assertEquals(results.get(0).getHeader(org.jboss.bus.api.Message.FROM_HEADER), "cdi:java.lang.Integer");
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.cdi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the processed events of the CDI translator with the synchronized list used before, when many threads fire
+ * events concurrently. Each operation fires one event through the translator and observes one event fired by the application.
+ * The pending events stand for the events fired by the translator and not yet observed.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ProcessedEventsBenchmark {
+
+   @Param({ "0", "100", "1000" })
+   private int pending;
+
+   private ProcessedEvents processedEvents;
+
+   private List<Object> processedList;
+
+   @Setup(Level.Iteration)
+   public void setup() {
+      processedEvents = new ProcessedEvents(60_000, 100_000);
+      processedList = Collections.synchronizedList(new ArrayList<>());
+      for (int i = 0; i < pending; i++) {
+         final Object event = new Object();
+         processedEvents.add(event);
+         processedList.add(event);
+      }
+   }
+
+   @Benchmark
+   public boolean processedEvents() {
+      final Object fired = new Object();
+      processedEvents.add(fired);
+      final boolean observed = processedEvents.remove(fired);
+      return processedEvents.remove(new Object()) || !observed;
+   }
+
+   @Benchmark
+   public boolean synchronizedList() {
+      final Object fired = new Object();
+      processedList.add(fired);
+      final boolean observed = processedList.remove(fired);
+      return processedList.remove(new Object()) || !observed;
+   }
+
+   public static void main(final String[] args) throws Exception {
+      new Runner(new OptionsBuilder().include(ProcessedEventsBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.cdi;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class ProcessedEventsTest {
+
+   @Test
+   public void testIdentity() {
+      final ProcessedEvents events = new ProcessedEvents(60_000, 100);
+      final String event = new String("event");
+
+      events.add(event);
+      events.add(event);
+      Assert.assertFalse(events.remove(new String("event")));
+      Assert.assertTrue(events.remove(event));
+      Assert.assertTrue(events.remove(event));
+      Assert.assertFalse(events.remove(event));
+      Assert.assertEquals(events.size(), 0);
+   }
+
+   @Test
+   public void testEviction() throws Exception {
+      final ProcessedEvents events = new ProcessedEvents(60_000, 10);
+      for (int i = 0; i < 20; i++) {
+         events.add(new Object());
+      }
+      Assert.assertTrue(events.size() <= 10);
+
+      final ProcessedEvents expiring = new ProcessedEvents(10, 100);
+      final Object event = new Object();
+      expiring.add(event);
+      Thread.sleep(50);
+      expiring.add(new Object());
+      Assert.assertFalse(expiring.remove(event));
+      Assert.assertEquals(expiring.size(), 1);
+   }
+}
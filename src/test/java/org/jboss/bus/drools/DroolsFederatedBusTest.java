@@ -30,9 +30,13 @@ import org.jboss.bus.internal.AbstractMessageTranslator;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.StreamSupport;
 
 /**
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
@@ -65,4 +69,100 @@ public class DroolsFederatedBusTest {
 
       FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
    }
-}
\ No newline at end of file
+
+   @Test
+   public void testPartitionedDroolsFederatedBus() throws Exception {
+
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/drools-partitioned-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      ProducerTemplate producerTemplate = context.getContext(CamelContext.class).createProducerTemplate();
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+
+      context.getContext(CamelContext.class).getEndpoint("direct:outTest").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+      for (int i = 0; i < 20; i++) {
+         producerTemplate.sendBodyAndHeader("direct:inTest", "myTestMessage" + i, "customer", "customer" + (i % 5));
+      }
+      Thread.sleep(500);
+
+      Assert.assertEquals(results.size(), 20);
+      for (final Message message : results) {
+         Assert.assertTrue(AbstractMessageTranslator.isSigned(message.getHeaders()));
+      }
+
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testEngineModes() throws Exception {
+      for (final String config : new String[] { "/drools-micro-batch-bus.xml", "/drools-fire-until-halt-bus.xml" }) {
+         final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+         final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource(config).getPath(), context);
+         final FederatedBus federatedBus = buses.get(0);
+         federatedBus.start();
+
+         ProducerTemplate producerTemplate = context.getContext(CamelContext.class).createProducerTemplate();
+
+         final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+
+         context.getContext(CamelContext.class).getEndpoint("direct:outTest").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+         for (int i = 0; i < 25; i++) {
+            producerTemplate.sendBody("direct:inTest", "myTestMessage" + i);
+         }
+         Thread.sleep(500);
+
+         Assert.assertEquals(results.size(), 25, "Unexpected number of messages with " + config);
+
+         FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+      }
+   }
+
+   @Test
+   public void testCompiledRulesCache() throws Exception {
+      final Path kjarDirectory = Files.createTempDirectory("federated-bus-kjar");
+
+      for (int run = 0; run < 2; run++) {
+         KieContainerCache.clear();
+
+         final DroolsFederatedBus federatedBus = new DroolsFederatedBus();
+         federatedBus.setRules("/default.drl");
+         federatedBus.setKjarDirectory(kjarDirectory.toString());
+         federatedBus.start();
+
+         try (final DirectoryStream<Path> kjars = Files.newDirectoryStream(kjarDirectory, "*.jar")) {
+            Assert.assertEquals(StreamSupport.stream(kjars.spliterator(), false).count(), 1L);
+         }
+
+         federatedBus.stop();
+      }
+   }
+
+   @Test
+   public void testKieModuleRules() throws Exception {
+
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/drools-kmodule-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      ProducerTemplate producerTemplate = context.getContext(CamelContext.class).createProducerTemplate();
+
+      final List<Message> results = Collections.synchronizedList(new LinkedList<>());
+
+      context.getContext(CamelContext.class).getEndpoint("direct:outTest").createConsumer(exchange -> results.add(exchange.getIn())).start();
+
+      producerTemplate.sendBody("direct:inTest", "myTestMessage");
+      Thread.sleep(100);
+
+      Assert.assertEquals(results.size(), 1);
+      Assert.assertEquals(results.get(0).getBody().toString(), "myTestMessage");
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+}
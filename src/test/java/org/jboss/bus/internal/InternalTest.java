@@ -20,9 +20,22 @@
 package org.jboss.bus.internal;
 
 import org.jboss.bus.api.Message;
+import org.jboss.bus.api.MessageTranslator;
+import org.jboss.bus.simple.DummyMessageTranslator;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+
 /**
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
  */
@@ -47,4 +60,233 @@ public class InternalTest {
       Assert.assertTrue(message.equals(message1));
    }
 
-}
\ No newline at end of file
+   @Test
+   public void testPropertiesView() throws Exception {
+      final Message message = new MessageImpl("hello");
+      message.setProperty("a", "1");
+
+      final Properties properties = message.getProperties();
+      properties.setProperty("b", "2");
+      Assert.assertEquals(message.getProperty("b"), "2");
+
+      message.setProperty("c", "3");
+      Assert.assertEquals(properties.getProperty("c"), "3");
+      Assert.assertEquals(properties.size(), 3);
+      Assert.assertEquals(properties.stringPropertyNames(), new HashSet<>(Arrays.asList("a", "b", "c")));
+
+      Assert.assertEquals(properties.remove("a"), "1");
+      Assert.assertNull(message.getProperty("a"));
+      Assert.assertEquals(properties.put("b", "4"), "2");
+      Assert.assertEquals(properties.putIfAbsent("b", "5"), "4");
+      Assert.assertEquals(properties.merge("c", "6", (v1, v2) -> v1 + "" + v2), "36");
+
+      properties.keySet().removeIf("b"::equals);
+      Assert.assertEquals(message.getProperties(), Collections.singletonMap("c", "36"));
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+         out.writeObject(properties);
+      }
+      try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+         Assert.assertEquals(in.readObject(), properties);
+      }
+
+      properties.clear();
+      Assert.assertTrue(message.getProperties().isEmpty());
+   }
+
+   @Test
+   public void testMessageDerivation() throws Exception {
+      final Message message = new MessageImpl("hello");
+      message.setHeader("a", "1");
+      message.setProperty("b", "2");
+
+      final Message derived = message.withHeader("a", "3").withProperty("c", "4").withPayload("bye");
+
+      Assert.assertEquals(message.getHeader("a"), "1");
+      Assert.assertNull(message.getProperty("c"));
+      Assert.assertEquals(message.getPayload(), "hello");
+
+      Assert.assertEquals(derived.getHeader("a"), "3");
+      Assert.assertEquals(derived.getProperty("b"), "2");
+      Assert.assertEquals(derived.getProperty("c"), "4");
+      Assert.assertEquals(derived.getPayload(), "bye");
+
+      final Map<String, Object> headers = message.getHeaders();
+      message.setHeader("d", "5");
+      Assert.assertFalse(headers.containsKey("d"));
+      Assert.assertEquals(message.getHeaders().size(), 2);
+
+      try {
+         message.getHeaders().put("e", "6");
+         Assert.fail("Headers must be immutable.");
+      } catch (UnsupportedOperationException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testImmutableMap() throws Exception {
+      final Map<String, Object> source = new HashMap<>();
+      source.put("a", 1);
+      source.put("b", 2);
+
+      final ImmutableMap<Object> map = ImmutableMap.copyOf(source);
+      Assert.assertEquals(map, source);
+      Assert.assertEquals(map.hashCode(), source.hashCode());
+      Assert.assertSame(map.without("c"), map);
+      Assert.assertEquals(map.without("a").size(), 1);
+      Assert.assertEquals(map.without("a").get("b"), 2);
+      Assert.assertTrue(map.without("a").without("b").isEmpty());
+      Assert.assertEquals(map.with("c", 3).size(), 3);
+      Assert.assertEquals(map.size(), 2);
+
+      ImmutableMap<Object> large = ImmutableMap.empty();
+      for (int i = 0; i < 100; i++) {
+         large = large.with("key" + i, i);
+      }
+      Assert.assertEquals(large.size(), 100);
+      for (int i = 0; i < 100; i++) {
+         Assert.assertEquals(large.get("key" + i), i);
+      }
+      Assert.assertNull(large.get("key100"));
+      Assert.assertEquals(large.without("key50").size(), 99);
+      Assert.assertNull(large.without("key50").get("key50"));
+      Assert.assertEquals(large.without("key50").get("key99"), 99);
+
+      // the arrays are shared with the maps derived in place, older snapshots stay unchanged
+      ImmutableMap<Object> snapshot = ImmutableMap.empty();
+      for (int i = 0; i < 20; i++) {
+         snapshot = snapshot.with("key" + i, i);
+      }
+      final ImmutableMap<Object> appended = snapshot.with("a", "appended");
+      final ImmutableMap<Object> branched = snapshot.with("b", "branched");
+      final ImmutableMap<Object> replaced = snapshot.with("key0", "replaced").with("c", "replaced");
+      Assert.assertEquals(snapshot.size(), 20);
+      Assert.assertFalse(snapshot.containsKey("a"));
+      Assert.assertFalse(snapshot.containsKey("b"));
+      Assert.assertEquals(appended.get("a"), "appended");
+      Assert.assertFalse(appended.containsKey("b"));
+      Assert.assertEquals(branched.get("b"), "branched");
+      Assert.assertFalse(branched.containsKey("a"));
+      Assert.assertEquals(replaced.get("key0"), "replaced");
+      Assert.assertEquals(replaced.size(), 21);
+      Assert.assertEquals(snapshot.get("key0"), 0);
+      Assert.assertEquals(appended.with("d", 1).get("key19"), 19);
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+         out.writeObject(appended);
+      }
+      try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+         final ImmutableMap<?> deserialized = (ImmutableMap<?>) in.readObject();
+         Assert.assertEquals(deserialized, appended);
+         Assert.assertEquals(deserialized.size(), 21);
+      }
+   }
+
+   @Test
+   public void testMessageHeaders() throws Exception {
+      final Map<String, Object> source = new HashMap<>();
+      source.put("a", "1");
+      source.put(Message.SOURCE_HEADER, "test");
+
+      final MessageHeaders headers = MessageHeaders.copyOf(source);
+      Assert.assertEquals(headers, source);
+      Assert.assertEquals(headers.get(Message.SOURCE_HEADER), "test");
+      Assert.assertFalse(headers.containsKey(Message.FROM_HEADER));
+
+      final MessageHeaders from = MessageHeaders.of(source, "test:endpoint", "test2");
+      Assert.assertEquals(from.size(), 3);
+      Assert.assertEquals(from.get(Message.FROM_HEADER), "test:endpoint");
+      Assert.assertEquals(from.get(Message.SOURCE_HEADER), "test2");
+      Assert.assertEquals(from.get("a"), "1");
+      Assert.assertEquals(new HashMap<>(from), from);
+
+      final MessageHeaders signed = from.with(MessageTranslator.TRANSLATOR_SIGNATURE, true);
+      Assert.assertTrue(AbstractMessageTranslator.isSigned(signed));
+      Assert.assertFalse(AbstractMessageTranslator.isSigned(from));
+      Assert.assertEquals(signed.entrySet().size(), 4);
+
+      // an explicit null is kept apart from a header that is not set
+      final MessageHeaders nullSource = MessageHeaders.empty().with(Message.SOURCE_HEADER, null);
+      Assert.assertTrue(nullSource.containsKey(Message.SOURCE_HEADER));
+      Assert.assertNull(nullSource.getOrDefault(Message.SOURCE_HEADER, "default"));
+      Assert.assertEquals(nullSource.size(), 1);
+      Assert.assertEquals(nullSource, Collections.singletonMap(Message.SOURCE_HEADER, null));
+      Assert.assertFalse(MessageHeaders.empty().containsKey(Message.SOURCE_HEADER));
+
+      final Map<String, Object> nullFrom = new HashMap<>();
+      nullFrom.put(Message.FROM_HEADER, null);
+      Assert.assertTrue(MessageHeaders.copyOf(nullFrom).containsKey(Message.FROM_HEADER));
+      Assert.assertEquals(MessageHeaders.copyOf(nullFrom).entrySet().size(), 1);
+   }
+
+   @Test
+   public void testMessageHeadersView() throws Exception {
+      final Map<String, Object> view = new HashMap<>();
+      view.put("a", "1");
+
+      final MessageHeaders headers = MessageHeaders.view(Collections.unmodifiableMap(view), "test:endpoint", "test");
+      Assert.assertEquals(headers.size(), 3);
+      Assert.assertEquals(headers.get("a"), "1");
+      Assert.assertEquals(headers.get(Message.FROM_HEADER), "test:endpoint");
+
+      final MessageHeaders derived = headers.with("b", "2");
+      Assert.assertEquals(derived.size(), 4);
+      Assert.assertEquals(derived.get("a"), "1");
+      Assert.assertEquals(headers.size(), 3);
+
+      final Map<String, Object> reservedView = new HashMap<>(view);
+      reservedView.put(Message.SOURCE_HEADER, "other");
+      final MessageHeaders reserved = MessageHeaders.view(reservedView, "test:endpoint", "test");
+      Assert.assertEquals(reserved.get(Message.SOURCE_HEADER), "test");
+      Assert.assertEquals(reserved.size(), 3);
+
+      final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+         oos.writeObject(headers);
+      }
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+         Assert.assertEquals(ois.readObject(), headers);
+      }
+   }
+
+   @Test
+   public void testEndpointOverrides() {
+      final Map<String, String> overrides = AbstractMessageTranslator.parseOverrides("direct:a=4, direct:b, seda:c?size=10=async,");
+      Assert.assertEquals(overrides.size(), 2);
+      Assert.assertEquals(overrides.get("direct:a"), "4");
+      Assert.assertEquals(overrides.get("seda:c?size=10"), "async");
+
+      final AbstractMessageTranslator translator = new DummyMessageTranslator();
+      Assert.assertEquals((int) translator.parseOverride(overrides, "direct:a", Integer::valueOf, 1), 4);
+      Assert.assertEquals((int) translator.parseOverride(overrides, "direct:b", Integer::valueOf, 1), 1);
+      Assert.assertEquals((int) translator.parseOverride(overrides, "seda:c?size=10", Integer::valueOf, 1), 1);
+   }
+
+   @Test
+   public void testMessagePool() throws Exception {
+      final MessagePool pool = new MessagePool(2);
+
+      final PooledMessage message = pool.acquire();
+      message.setPayload("hello");
+      message.setHeader("a", "1");
+      message.retain(2);
+
+      message.release();
+      message.release();
+      Assert.assertEquals(pool.getFreeCount(), 0);
+      message.release();
+      Assert.assertEquals(pool.getFreeCount(), 1);
+
+      final PooledMessage reused = pool.acquire();
+      Assert.assertSame(reused, message);
+      Assert.assertNull(reused.getPayload());
+      Assert.assertTrue(reused.getHeaders().isEmpty());
+      Assert.assertEquals(reused.getReferences(), 1);
+      Assert.assertEquals(pool.getCreatedCount(), 1L);
+
+      MessagePool.release(new MessageImpl("unpooled"));
+   }
+}
@@ -0,0 +1,90 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.performance;
+
+import org.jboss.bus.api.Message;
+import org.jboss.bus.internal.MessageHeaders;
+import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.internal.MessagePool;
+import org.jboss.bus.internal.PooledMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares allocating a new message for every inbound event with taking it from a message pool, including the fan-out
+ * to two translators. Run the main method, ideally with {@code -prof gc} to see the allocation rate.
+ *
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MessagePoolBenchmark {
+
+   private static final int FAN_OUT = 2;
+
+   private final MessagePool pool = new MessagePool(1024);
+
+   private final MessageHeaders headers = MessageHeaders.of(null, "camel:direct://in", "camel");
+
+   @Benchmark
+   public Message messageImpl() {
+      final Message message = new MessageImpl("payload", headers);
+      for (int i = 0; i < FAN_OUT; i++) {
+         MessagePool.release(message);
+      }
+      return message;
+   }
+
+   @Benchmark
+   public Object pooledMessage() {
+      final PooledMessage message = pool.acquire();
+      message.setPayload("payload");
+      message.setHeaders(headers);
+
+      message.retain(FAN_OUT);
+      message.release();
+      final Object payload = message.getPayload();
+      for (int i = 0; i < FAN_OUT; i++) {
+         message.release();
+      }
+      return payload;
+   }
+
+   public static void main(final String[] args) throws Exception {
+      new Runner(new OptionsBuilder().include(MessagePoolBenchmark.class.getSimpleName()).build()).run();
+   }
+}
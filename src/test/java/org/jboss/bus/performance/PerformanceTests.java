@@ -133,6 +133,23 @@ public class PerformanceTests {
       FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
    }
 
+   @Test
+   public void testRingBuffer() throws Exception {
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/performance6-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+
+      federatedBus.start();
+
+      CamelContext camelContext = context.getContext(CamelContext.class);
+      camelContext.addRoutes(new InputRoute());
+
+      log.info("Running ring buffer performance test. Press Ctrl-C to stop...");
+      promptEnterKey();
+
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
    private void promptEnterKey() {
       Scanner scanner = new Scanner(System.in);
       scanner.nextLine();
@@ -0,0 +1,114 @@
+/*
+ * -----------------------------------------------------------------------\
+ * FederatedBus
+ *  
+ * Copyright (C) 2015 - 2016 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package org.jboss.bus.ring;
+
+import org.jboss.bus.simple.DummyMessageTranslator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
+ */
+public class RingBufferFederatedBusTest {
+
+   @Test
+   public void testRingBufferBus() {
+      for (final WaitStrategy waitStrategy : WaitStrategy.values()) {
+         DummyMessageTranslator t1 = new DummyMessageTranslator();
+         t1.setName("t1");
+         DummyMessageTranslator t2 = new DummyMessageTranslator();
+         t2.setName("t2");
+         DummyMessageTranslator t3 = new DummyMessageTranslator();
+         t3.setName("t3");
+
+         RingBufferFederatedBus federatedBus = new RingBufferFederatedBus();
+         federatedBus.setBufferSize(4);
+         federatedBus.setWaitStrategy(waitStrategy);
+         federatedBus.setRoutes("t1 -> t3");
+
+         federatedBus.registerTranslator(t1);
+         federatedBus.registerTranslator(t2);
+         federatedBus.registerTranslator(t3);
+
+         federatedBus.start();
+
+         for (int i = 0; i < 100; i++) {
+            t1.generateSourcedMessage("hello" + i);
+            t2.generateSourcedMessage("hi" + i);
+         }
+
+         federatedBus.stop();
+
+         final List<String> hellos = IntStream.range(0, 100).mapToObj(i -> "hello" + i).collect(Collectors.toList());
+         final List<String> his = IntStream.range(0, 100).mapToObj(i -> "hi" + i).collect(Collectors.toList());
+
+         Assert.assertEquals(payloads(t1), his);
+         Assert.assertTrue(payloads(t2).isEmpty());
+         Assert.assertEquals(payloads(t3).stream().filter(p -> p.startsWith("hello")).collect(Collectors.toList()), hellos);
+         Assert.assertEquals(payloads(t3).stream().filter(p -> p.startsWith("hi")).collect(Collectors.toList()), his);
+      }
+   }
+
+   @Test
+   public void testStopWhilePublishing() throws Exception {
+      final DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      final DummyMessageTranslator t2 = new DummyMessageTranslator();
+      t2.setName("t2");
+
+      final RingBufferFederatedBus federatedBus = new RingBufferFederatedBus();
+      federatedBus.setBufferSize(2);
+      federatedBus.setWaitStrategy(WaitStrategy.YIELD);
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(t2);
+      federatedBus.start();
+
+      final AtomicBoolean stopped = new AtomicBoolean(false);
+      final Thread[] producers = new Thread[4];
+      for (int i = 0; i < producers.length; i++) {
+         producers[i] = new Thread(() -> {
+            while (!stopped.get()) {
+               t1.generateSourcedMessage("hello");
+            }
+         });
+         producers[i].start();
+      }
+
+      Thread.sleep(50);
+      federatedBus.stop();
+      stopped.set(true);
+
+      // a producer racing with stop() must neither park forever nor leave its message behind
+      for (final Thread producer : producers) {
+         producer.join(2_000);
+         Assert.assertFalse(producer.isAlive(), "A producer got stuck after the bus stopped.");
+      }
+      Assert.assertFalse(payloads(t2).isEmpty());
+   }
+
+   private List<String> payloads(final DummyMessageTranslator translator) {
+      return translator.getMessages().stream().map(m -> m.getPayload().toString()).collect(Collectors.toList());
+   }
+}
@@ -43,6 +43,10 @@ public class DummyMessageTranslator extends AbstractMessageTranslator {
 
    private static final String PROCESS_SET_FLAG = "federated.bus.processed_flag";
 
+   public DummyMessageTranslator() {
+      name = "dummy";
+   }
+
    @Override
    public void initialize(final CompoundContext compoundContext) {
       // nop
@@ -51,7 +55,9 @@ public class DummyMessageTranslator extends AbstractMessageTranslator {
    @Override
    public void sendMessage(Message message) throws FederatedBusException {
       message.getProperties().setProperty(PROCESS_SET_FLAG, "true");
-      messageStore.add(message);
+      synchronized (messageStore) {
+         messageStore.add(message);
+      }
    }
 
    public void generateMessage(final String payload) {
@@ -60,6 +66,13 @@ public class DummyMessageTranslator extends AbstractMessageTranslator {
       federatedBus.processMessage(message);
    }
 
+   public void generateSourcedMessage(final String payload) {
+      final Message message = new MessageImpl();
+      message.setPayload(payload);
+      message.setHeader(Message.SOURCE_HEADER, getName());
+      federatedBus.processMessage(message);
+   }
+
    public List<Message> getMessages() {
       return Collections.unmodifiableList(messageStore);
    }
@@ -83,9 +96,4 @@ public class DummyMessageTranslator extends AbstractMessageTranslator {
    public void setProp2(String prop2) {
       this.prop2 = prop2;
    }
-
-   @Override
-   public String getName() {
-      return "dummy";
-   }
 }
@@ -19,11 +19,23 @@
  */
 package org.jboss.bus.simple;
 
+import org.jboss.bus.api.FederatedBusException;
+import org.jboss.bus.api.Message;
+import org.jboss.bus.internal.ExecutorStrategy;
+import org.jboss.bus.internal.MessageImpl;
+import org.jboss.bus.internal.MessagePool;
+import org.jboss.bus.internal.OutboundQueue;
+import org.jboss.bus.internal.OverflowPolicy;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author <a href="mailto:lenka@vecerovi.com">Lenka Večeřa</a>
@@ -55,6 +67,307 @@ public class SimpleFederatedBusTest {
       verifyMessages(t3);
    }
 
+   @Test
+   public void testExecutorStrategies() {
+      for (final ExecutorStrategy executorStrategy : ExecutorStrategy.values()) {
+         DummyMessageTranslator t1 = new DummyMessageTranslator();
+         DummyMessageTranslator t2 = new DummyMessageTranslator();
+
+         SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+         federatedBus.setExecutorStrategy(executorStrategy);
+
+         federatedBus.registerTranslator(t1);
+         federatedBus.registerTranslator(t2);
+
+         federatedBus.start();
+
+         t1.generateMessage("hello1");
+         t2.generateMessage("hello2");
+         t1.generateMessage("hello3");
+
+         federatedBus.stop();
+
+         verifyMessages(t1);
+         verifyMessages(t2);
+      }
+   }
+
+   @Test
+   public void testRoutes() throws Exception {
+      DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      DummyMessageTranslator t2 = new DummyMessageTranslator();
+      t2.setName("t2");
+      DummyMessageTranslator t3 = new DummyMessageTranslator();
+      t3.setName("t3");
+
+      SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setRoutes("t1 -> t3");
+      federatedBus.setSkipSource(true);
+
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(t2);
+      federatedBus.registerTranslator(t3);
+
+      federatedBus.start();
+
+      t1.generateSourcedMessage("hello1");
+      t2.generateSourcedMessage("hello2");
+      Thread.sleep(100);
+
+      federatedBus.stop();
+
+      Assert.assertEquals(payloads(t1), Collections.singletonList("hello2"));
+      Assert.assertEquals(payloads(t2), Collections.emptyList());
+      Assert.assertEquals(payloads(t3).size(), 2);
+      Assert.assertTrue(payloads(t3).containsAll(Arrays.asList("hello1", "hello2")));
+   }
+
+   @Test
+   public void testSingleTranslator() throws Exception {
+      DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      t1.setInputEndpoints("in");
+      t1.setOutputEndpoints("out");
+
+      SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.registerTranslator(t1);
+      federatedBus.start();
+
+      t1.generateSourcedMessage("hello1");
+      Thread.sleep(100);
+
+      federatedBus.stop();
+
+      // the source translator is skipped by default
+      Assert.assertEquals(payloads(t1), Collections.emptyList());
+
+      // a translator bridging its own endpoints needs an explicit route
+      t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      t1.setInputEndpoints("in");
+      t1.setOutputEndpoints("out");
+
+      federatedBus = new SimpleFederatedBus();
+      federatedBus.setRoutes("t1 -> t1");
+      federatedBus.registerTranslator(t1);
+      federatedBus.start();
+
+      t1.generateSourcedMessage("hello1");
+      Thread.sleep(100);
+
+      federatedBus.stop();
+
+      Assert.assertEquals(payloads(t1), Collections.singletonList("hello1"));
+   }
+
+   @Test
+   public void testSkipSourceSharedName() throws Exception {
+      DummyMessageTranslator t1 = new DummyMessageTranslator();
+      DummyMessageTranslator t2 = new DummyMessageTranslator();
+
+      SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setSkipSource(true);
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(t2);
+      federatedBus.start();
+
+      t1.generateSourcedMessage("hello1");
+      Thread.sleep(100);
+
+      federatedBus.stop();
+
+      // both translators are called "dummy", the source cannot be told apart and is not skipped
+      Assert.assertEquals(payloads(t1), Collections.singletonList("hello1"));
+      Assert.assertEquals(payloads(t2), Collections.singletonList("hello1"));
+   }
+
+   @Test
+   public void testInvalidRoutes() {
+      final DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+
+      final SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setRoutes("t1 -> unknown");
+      federatedBus.registerTranslator(t1);
+
+      try {
+         federatedBus.start();
+         Assert.fail("The bus must not start with invalid routes.");
+      } catch (IllegalStateException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testDropNewest() throws Exception {
+      final SimpleFederatedBus federatedBus = overflowBus(OverflowPolicy.DROP_NEWEST);
+      final SlowMessageTranslator slow = (SlowMessageTranslator) federatedBus.getOutboundQueues().keySet().stream().filter(t -> t instanceof SlowMessageTranslator).findFirst().get();
+      final OutboundQueue queue = federatedBus.getOutboundQueues().get(slow).get(0);
+
+      Assert.assertEquals(queue.getDepth(), 1);
+      Assert.assertEquals(queue.getRejectedCount(), 3);
+      Assert.assertEquals(federatedBus.getRejectedCount(), 3);
+
+      slow.release();
+      federatedBus.stop();
+
+      Assert.assertEquals(payloads(slow), Arrays.asList("hello0", "hello1"));
+   }
+
+   @Test
+   public void testSpillToDisk() throws Exception {
+      final SimpleFederatedBus federatedBus = overflowBus(OverflowPolicy.SPILL_TO_DISK);
+      final SlowMessageTranslator slow = (SlowMessageTranslator) federatedBus.getOutboundQueues().keySet().stream().filter(t -> t instanceof SlowMessageTranslator).findFirst().get();
+      final OutboundQueue queue = federatedBus.getOutboundQueues().get(slow).get(0);
+
+      Assert.assertEquals(queue.getDepth(), 4);
+      Assert.assertEquals(queue.getSpilledCount(), 3);
+      Assert.assertEquals(queue.getRejectedCount(), 0);
+
+      slow.release();
+      federatedBus.stop();
+
+      Assert.assertEquals(payloads(slow), Arrays.asList("hello0", "hello1", "hello2", "hello3", "hello4"));
+   }
+
+   @Test
+   public void testBatching() throws Exception {
+      final DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      final BatchingMessageTranslator t2 = new BatchingMessageTranslator();
+      t2.setName("t2");
+
+      final SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setMaxBatchSize(10);
+      federatedBus.setMaxLingerTime(500);
+
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(t2);
+
+      federatedBus.start();
+
+      for (int i = 0; i < 5; i++) {
+         t1.generateSourcedMessage("hello" + i);
+      }
+
+      federatedBus.stop();
+
+      Assert.assertEquals(t2.getBatchSizes(), Collections.singletonList(5));
+      Assert.assertEquals(payloads(t2), Arrays.asList("hello0", "hello1", "hello2", "hello3", "hello4"));
+   }
+
+   @Test
+   public void testOrderingKey() {
+      final DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+
+      final SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setOrderingKey("key");
+      federatedBus.setOrderingLanes(4);
+
+      federatedBus.registerTranslator(t1);
+      federatedBus.start();
+
+      Assert.assertEquals(federatedBus.getOutboundQueues().get(t1).size(), 4);
+
+      for (int i = 0; i < 100; i++) {
+         for (final String key : Arrays.asList("a", "b", "c")) {
+            final Message message = new MessageImpl(key + i);
+            message.setHeader("key", key);
+            federatedBus.processMessage(message);
+         }
+      }
+
+      federatedBus.stop();
+
+      for (final String key : Arrays.asList("a", "b", "c")) {
+         Assert.assertEquals(payloads(t1).stream().filter(p -> p.startsWith(key)).collect(Collectors.toList()),
+               IntStream.range(0, 100).mapToObj(i -> key + i).collect(Collectors.toList()));
+      }
+
+      // lanes cannot exceed the translator concurrency
+      final SimpleFederatedBus cappedBus = new SimpleFederatedBus();
+      cappedBus.setOrderingKey("key");
+      cappedBus.setOrderingLanes(4);
+      cappedBus.setTranslatorConcurrency(2);
+
+      cappedBus.registerTranslator(t1);
+      cappedBus.start();
+
+      Assert.assertEquals(cappedBus.getOutboundQueues().get(t1).size(), 2);
+
+      cappedBus.stop();
+   }
+
+   @Test
+   public void testMessagePool() throws Exception {
+      final DummyMessageTranslator t1 = new CopyingMessageTranslator();
+      t1.setName("t1");
+      final DummyMessageTranslator t2 = new CopyingMessageTranslator();
+      t2.setName("t2");
+
+      final SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(t2);
+      federatedBus.start();
+
+      final MessagePool pool = new MessagePool(10);
+      for (int i = 0; i < 100; i++) {
+         final Message message = pool.acquire();
+         message.setPayload("hello" + i);
+         federatedBus.processMessage(message);
+
+         while (!federatedBus.getOutboundQueues().values().stream().flatMap(List::stream).allMatch(OutboundQueue::isIdle)) {
+            Thread.sleep(1);
+         }
+      }
+
+      final OutboundQueue queue = federatedBus.getOutboundQueues().get(t1).get(0);
+      Assert.assertEquals(queue.getSentCount(), 100);
+      Assert.assertEquals(queue.getFailedCount(), 0);
+      Assert.assertEquals(queue.getInFlight(), 0);
+      Assert.assertTrue(queue.getMaxLatency() >= queue.getAverageLatency());
+
+      federatedBus.stop();
+
+      final List<String> expected = IntStream.range(0, 100).mapToObj(i -> "hello" + i).collect(Collectors.toList());
+      Assert.assertEquals(payloads(t1), expected);
+      Assert.assertEquals(payloads(t2), expected);
+      Assert.assertEquals(pool.getCreatedCount(), 1L);
+   }
+
+   private SimpleFederatedBus overflowBus(final OverflowPolicy overflowPolicy) throws Exception {
+      final DummyMessageTranslator t1 = new DummyMessageTranslator();
+      t1.setName("t1");
+      final SlowMessageTranslator slow = new SlowMessageTranslator();
+      slow.setName("slow");
+
+      final SimpleFederatedBus federatedBus = new SimpleFederatedBus();
+      federatedBus.setRoutes("t1 -> slow");
+      federatedBus.setQueueCapacity(1);
+      federatedBus.setTranslatorConcurrency(1);
+      federatedBus.setOverflowPolicy(overflowPolicy);
+
+      federatedBus.registerTranslator(t1);
+      federatedBus.registerTranslator(slow);
+
+      federatedBus.start();
+
+      t1.generateSourcedMessage("hello0");
+      Thread.sleep(100); // the first message is being sent, the translator is blocked
+
+      for (int i = 1; i < 5; i++) {
+         t1.generateSourcedMessage("hello" + i);
+      }
+
+      return federatedBus;
+   }
+
+   private List<String> payloads(final DummyMessageTranslator translator) {
+      return translator.getMessages().stream().map(m -> m.getPayload().toString()).collect(Collectors.toList());
+   }
+
    private void verifyMessages(final DummyMessageTranslator translator) {
       List<String> messages = translator.getMessages().stream().map(m -> m.getPayload().toString()).collect(Collectors.toList());
       Assert.assertEquals(messages.size(), 3);
@@ -62,4 +375,47 @@ public class SimpleFederatedBusTest {
       Assert.assertTrue(messages.contains("hello2"));
       Assert.assertTrue(messages.contains("hello3"));
    }
-}
\ No newline at end of file
+
+   private static class SlowMessageTranslator extends DummyMessageTranslator {
+
+      private final CountDownLatch latch = new CountDownLatch(1);
+
+      @Override
+      public void sendMessage(final Message message) throws FederatedBusException {
+         try {
+            latch.await();
+         } catch (InterruptedException e) {
+            throw new FederatedBusException(e);
+         }
+         super.sendMessage(message);
+      }
+
+      void release() {
+         latch.countDown();
+      }
+   }
+
+   private static class BatchingMessageTranslator extends DummyMessageTranslator {
+
+      private final List<Integer> batchSizes = Collections.synchronizedList(new LinkedList<>());
+
+      @Override
+      public void sendMessages(final List<Message> messages) throws FederatedBusException {
+         batchSizes.add(messages.size());
+         super.sendMessages(messages);
+      }
+
+      List<Integer> getBatchSizes() {
+         return batchSizes;
+      }
+   }
+
+   private static class CopyingMessageTranslator extends DummyMessageTranslator {
+
+      @Override
+      public void sendMessage(final Message message) throws FederatedBusException {
+         // pooled messages are reused once sent, keeps their copies instead
+         super.sendMessage(message.withPayload(message.getPayload()));
+      }
+   }
+}
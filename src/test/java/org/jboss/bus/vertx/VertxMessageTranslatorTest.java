@@ -19,19 +19,26 @@
  */
 package org.jboss.bus.vertx;
 
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.impl.MessageImpl;
+import org.jboss.bus.api.BinaryPayload;
 import org.jboss.bus.api.CompoundContext;
 import org.jboss.bus.api.FederatedBus;
 import org.jboss.bus.api.MessageTranslator;
 import org.jboss.bus.config.FederatedBusFactory;
 import org.jboss.bus.config.FederatedBusFactoryTest;
+import org.jboss.bus.internal.MessageHeaders;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -72,4 +79,163 @@ public class VertxMessageTranslatorTest {
       FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
    }
 
-}
\ No newline at end of file
+   @Test
+   public void testMessageCodec() throws Exception {
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/vertx-codec-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      List<Message> messages = new ArrayList<>();
+
+      context.getContext(Vertx.class).eventBus().consumer("outEnd", vertexMessage -> {
+         messages.add(vertexMessage);
+      });
+
+      DeliveryOptions options = new DeliveryOptions();
+      options.addHeader("myHeader", "myValue");
+
+      context.getContext(Vertx.class).eventBus().send("inEnd", "myMessage", options);
+
+      Thread.sleep(1000);
+
+      Assert.assertEquals(messages.size(), 1);
+      Message message1 = messages.iterator().next();
+      Assert.assertEquals(message1.headers().get(MessageTranslator.TRANSLATOR_SIGNATURE), "true");
+      final org.jboss.bus.api.Message busMessage = (org.jboss.bus.api.Message) message1.body();
+      Assert.assertEquals(busMessage.getPayload(), "myMessage");
+      Assert.assertEquals(busMessage.getHeader("myHeader"), "myValue");
+      Assert.assertEquals(busMessage.getHeader(org.jboss.bus.api.Message.FROM_HEADER), "vertx:inEnd");
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testVerticleDispatch() throws Exception {
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/vertx-verticle-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      final Vertx vertx = context.getContext(Vertx.class);
+      Assert.assertEquals(vertx.deploymentIDs().size(), 2);
+
+      List<Message> messages = Collections.synchronizedList(new ArrayList<>());
+
+      vertx.eventBus().consumer("outEnd", vertexMessage -> {
+         messages.add(vertexMessage);
+      });
+
+      for (int i = 0; i < 10; i++) {
+         DeliveryOptions options = new DeliveryOptions();
+         options.addHeader("myHeader", "myValue" + i);
+         vertx.eventBus().send("inEnd", "myMessage" + i, options);
+      }
+
+      Thread.sleep(1000);
+
+      Assert.assertEquals(messages.size(), 10);
+      for (final Message message : messages) {
+         Assert.assertEquals(message.headers().get(MessageTranslator.TRANSLATOR_SIGNATURE), "true");
+         Assert.assertTrue(message.body().toString().startsWith("myMessage"));
+      }
+
+      messages.clear();
+      for (int i = 0; i < 10; i++) {
+         vertx.eventBus().publish("inEnd", "myPublished" + i);
+      }
+
+      Thread.sleep(1000);
+
+      Assert.assertEquals(messages.size(), 10, "Each published message should be dispatched once.");
+      for (final Message message : messages) {
+         Assert.assertTrue(message.body().toString().startsWith("myPublished"));
+      }
+
+      federatedBus.stop();
+      Assert.assertEquals(vertx.deploymentIDs().size(), 0);
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testDeliveryModes() throws Exception {
+      final CompoundContext context = FederatedBusFactory.getDefaultCompoundContext();
+      final List<FederatedBus> buses = FederatedBusFactory.loadFromXml(FederatedBusFactoryTest.class.getResource("/vertx-modes-bus.xml").getPath(), context);
+      final FederatedBus federatedBus = buses.get(0);
+      federatedBus.start();
+
+      final Vertx vertx = context.getContext(Vertx.class);
+      final List<Message> published1 = Collections.synchronizedList(new ArrayList<>());
+      final List<Message> published2 = Collections.synchronizedList(new ArrayList<>());
+      final List<Message> requests = Collections.synchronizedList(new ArrayList<>());
+
+      vertx.eventBus().consumer("outPublish", published1::add);
+      vertx.eventBus().consumer("outPublish", published2::add);
+      vertx.eventBus().consumer("outRequest", request -> {
+         requests.add(request);
+         request.reply("reply:" + request.body());
+      });
+
+      vertx.eventBus().send("inEnd", "myMessage");
+
+      Thread.sleep(1000);
+
+      Assert.assertEquals(published1.get(0).body(), "myMessage");
+      Assert.assertEquals(published2.get(0).body(), "myMessage");
+
+      Assert.assertEquals(requests.size(), 1, "The reply should not be requested again.");
+      Assert.assertEquals(requests.get(0).body(), "myMessage");
+      final String correlationId = requests.get(0).headers().get(org.jboss.bus.api.Message.CORRELATION_ID_HEADER);
+      Assert.assertNotNull(correlationId);
+
+      Assert.assertEquals(published1.size(), 2);
+      Assert.assertEquals(published1.get(1).body(), "reply:myMessage");
+      Assert.assertEquals(published1.get(1).headers().get(org.jboss.bus.api.Message.CORRELATION_ID_HEADER), correlationId);
+      Assert.assertEquals(published1.get(1).headers().get(org.jboss.bus.api.Message.FROM_HEADER), "vertx:outRequest");
+
+      federatedBus.stop();
+      FederatedBusFactory.shutdownContext(federatedBus.getCompoundContext());
+   }
+
+   @Test
+   public void testMessageCodecWireForm() {
+      final FederatedMessageCodec codec = new FederatedMessageCodec();
+      final org.jboss.bus.api.Message message = new org.jboss.bus.internal.MessageImpl(BinaryPayload.wrap(new byte[] { 1, 2, 3 }),
+            MessageHeaders.of(null, "vertx:inEnd", "vertx"))
+            .withHeader("count", 42).withHeader("size", 7L).withHeader("valid", true).withHeader("ratio", 0.5)
+            .withHeader("text", "value").withHeader("list", new ArrayList<>(Arrays.asList("a", "b")))
+            .withProperty("myProperty", "myValue");
+
+      Assert.assertSame(codec.transform(message), message);
+
+      final Buffer buffer = Buffer.buffer().appendInt(-1);
+      codec.encodeToWire(buffer, message);
+      final org.jboss.bus.api.Message decoded = codec.decodeFromWire(4, buffer);
+
+      Assert.assertEquals(((BinaryPayload) decoded.getPayload()).getBytes(), new byte[] { 1, 2, 3 });
+      Assert.assertEquals(decoded.getHeaders(), message.getHeaders());
+      Assert.assertEquals(decoded.getHeader("count"), 42);
+      Assert.assertEquals(decoded.getHeader("size"), 7L);
+      Assert.assertEquals(decoded.getHeader("valid"), true);
+      Assert.assertEquals(decoded.getHeader(org.jboss.bus.api.Message.FROM_HEADER), "vertx:inEnd");
+      Assert.assertEquals(decoded.getProperty("myProperty"), "myValue");
+   }
+
+   @Test
+   public void testMultiMapHeaders() {
+      final MultiMap multiMap = MultiMap.caseInsensitiveMultiMap();
+      multiMap.add("Name", "1");
+      multiMap.add("list", "2");
+      multiMap.add("list", "3");
+
+      final MultiMapHeaders headers = new MultiMapHeaders(multiMap);
+      Assert.assertEquals(headers.get("Name"), "1");
+      Assert.assertNull(headers.get("name"));
+      Assert.assertFalse(headers.containsKey("name"));
+      Assert.assertFalse(headers.containsKey("missing"));
+      Assert.assertEquals(headers.get("list"), Arrays.asList("2", "3"));
+      Assert.assertEquals(headers.size(), 2);
+      Assert.assertEquals(headers.keySet(), new HashSet<>(Arrays.asList("Name", "list")));
+   }
+}